@@ -0,0 +1,94 @@
+/**
+ * Copyright (c) 2010-2018 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.sonypjtalk.benchmark;
+
+import java.net.InetAddress;
+import java.util.concurrent.CompletionException;
+
+import org.openhab.binding.sonypjtalk.internal.PowerStatus;
+import org.openhab.binding.sonypjtalk.internal.ProjectorConnection;
+import org.openhab.binding.sonypjtalk.internal.SDCPEventLoop;
+import org.openhab.binding.sonypjtalk.internal.SDCPMetrics;
+import org.openhab.binding.sonypjtalk.internal.SDCPSocketRegistry;
+import org.openhab.binding.sonypjtalk.simulator.ProjectorSimulator;
+import org.openhab.binding.sonypjtalk.simulator.SimulatedProjector;
+
+/**
+ * Regression check of the requests following a request that is never
+ * answered: a simulated projector drops one request for the power status,
+ * then every following request for the power status must be answered.
+ *
+ * A request sent while the one that timed out is still expected to be
+ * answered late would take its late response, and time out in turn, so
+ * that a single dropped frame would fail every following poll.
+ *
+ * {@code java -cp target/benchmarks.jar org.openhab.binding.sonypjtalk.benchmark.DroppedResponseCheck}
+ * prints the metrics of the run, and exits with status 1 if the check failed.
+ *
+ * @author Fabien Philippe - Initial contribution
+ *
+ */
+public class DroppedResponseCheck {
+    /**
+     * Count of requests sent after the dropped one.
+     */
+    private static final int REQUESTS = 5;
+
+    public static void main(String[] args) throws Exception {
+        ProjectorSimulator simulator = new ProjectorSimulator();
+        SDCPEventLoop eventLoop = new SDCPEventLoop("SDCP-event-loop-dropped-response-check");
+        eventLoop.start();
+        SimulatedProjector projector = new SimulatedProjector("VPL-HW65ES", new byte[] { 10, 0, 0, 1 });
+        projector.setLatency(20, 0);
+        ProjectorConnection connection = new ProjectorConnection(new SDCPSocketRegistry(eventLoop),
+                InetAddress.getLoopbackAddress().getHostAddress(), simulator.add(projector), "SONY");
+
+        boolean passed = true;
+        try {
+            connection.getPowerStatusAsync(ProjectorConnection.DEFAULT_TIMEOUT).join();
+            projector.dropNext(1);
+            if (null != poll(connection)) {
+                System.out.println("the dropped request has been answered");
+                passed = false;
+            }
+            for (int i = 0; i < REQUESTS; i++) {
+                if (null == poll(connection)) {
+                    System.out.println("request " + (i + 1) + " after the dropped one failed");
+                    passed = false;
+                }
+            }
+
+            SDCPMetrics metrics = connection.getMetrics();
+            System.out.println(metrics);
+            if (1 != metrics.getTimeouts() || 0 != metrics.getLateResponses()) {
+                System.out.println("expected 1 timeout and no late response");
+                passed = false;
+            }
+        } finally {
+            connection.close();
+            eventLoop.execute(eventLoop::stop);
+            simulator.stop();
+        }
+
+        System.out.println(passed ? "passed" : "FAILED");
+        System.exit(passed ? 0 : 1);
+    }
+
+    /**
+     * @return the power status of the projector, null if the request failed
+     */
+    private static PowerStatus poll(ProjectorConnection connection) {
+        try {
+            return connection.getPowerStatusAsync(ProjectorConnection.DEFAULT_TIMEOUT).join();
+        } catch (CompletionException e) {
+            System.out.println("poll failed: " + e.getCause());
+            return null;
+        }
+    }
+}
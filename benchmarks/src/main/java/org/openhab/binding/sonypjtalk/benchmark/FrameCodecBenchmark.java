@@ -0,0 +1,118 @@
+/**
+ * Copyright (c) 2010-2018 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.sonypjtalk.benchmark;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openhab.binding.sonypjtalk.internal.PowerStatus;
+import org.openhab.binding.sonypjtalk.internal.SDCPFrameCodec;
+import org.openhab.binding.sonypjtalk.internal.SDCPItem;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Encoding of the requests and decoding of the responses, without any I/O.
+ *
+ * @author Fabien Philippe - Initial contribution
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FrameCodecBenchmark {
+    private final SDCPFrameCodec codec = new SDCPFrameCodec("SONY");
+
+    private final ByteBuffer out = ByteBuffer.allocateDirect(SDCPFrameCodec.MAX_FRAME_LENGTH);
+
+    private final byte[] setData = SDCPItem.PICTURE_MODE.encode("REFERENCE");
+
+    private ByteBuffer powerStatusResponse;
+
+    private ByteBuffer modelNameResponse;
+
+    @Setup
+    public void setup() {
+        powerStatusResponse = response(0x0102, new byte[] { 0x00, 0x03 });
+        modelNameResponse = response(0x8001, "VPL-HW65ES\0\0\0\0\0\0".getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Get command without data, as sent by every poll.
+     */
+    @Benchmark
+    public ByteBuffer encodeGetCommand() {
+        out.clear();
+        codec.encode(out, SDCPFrameCodec.GET, SDCPItem.POWER_STATUS.getNumber(), SDCPItem.POWER_STATUS.encode(null));
+        return out;
+    }
+
+    /**
+     * Set command with its data encoded from a value.
+     */
+    @Benchmark
+    public ByteBuffer encodeSetCommand() {
+        out.clear();
+        codec.encode(out, SDCPFrameCodec.SET, SDCPItem.PICTURE_MODE.getNumber(),
+                SDCPItem.PICTURE_MODE.encode("REFERENCE"));
+        return out;
+    }
+
+    /**
+     * Set command with data already encoded.
+     */
+    @Benchmark
+    public ByteBuffer encodeSetCommandData() {
+        out.clear();
+        codec.encode(out, SDCPFrameCodec.SET, SDCPItem.PICTURE_MODE.getNumber(), setData);
+        return out;
+    }
+
+    /**
+     * Response of the power status, decoded straight from the receive buffer.
+     */
+    @Benchmark
+    public PowerStatus decodePowerStatus() {
+        powerStatusResponse.rewind();
+        codec.decode(powerStatusResponse);
+        return SDCPItem.POWER_STATUS.getDecoder().apply(codec.getData());
+    }
+
+    /**
+     * Response of the model name, the only item whose value is a string built
+     * from the data.
+     */
+    @Benchmark
+    public String decodeModelName() {
+        modelNameResponse.rewind();
+        codec.decode(modelNameResponse);
+        return SDCPItem.MODEL_NAME.getDecoder().apply(codec.getData());
+    }
+
+    private static ByteBuffer response(int itemNumber, byte[] data) {
+        ByteBuffer response = ByteBuffer.allocateDirect(SDCPFrameCodec.HEADER_LENGTH + data.length);
+        response.put(new byte[] { 0x02, 0x0A, 'S', 'O', 'N', 'Y', 0x01, (byte) (itemNumber >> 8), (byte) itemNumber,
+                (byte) data.length });
+        response.put(data);
+        response.flip();
+        return response;
+    }
+}
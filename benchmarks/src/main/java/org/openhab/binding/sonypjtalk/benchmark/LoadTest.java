@@ -0,0 +1,207 @@
+/**
+ * Copyright (c) 2010-2018 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.sonypjtalk.benchmark;
+
+import java.net.InetAddress;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.openhab.binding.sonypjtalk.internal.AdmissionController;
+import org.openhab.binding.sonypjtalk.internal.LatencyHistogram;
+import org.openhab.binding.sonypjtalk.internal.PollScheduler;
+import org.openhab.binding.sonypjtalk.internal.ProjectorConnection;
+import org.openhab.binding.sonypjtalk.internal.SDCPEventLoop;
+import org.openhab.binding.sonypjtalk.internal.SDCPMetrics;
+import org.openhab.binding.sonypjtalk.internal.SDCPSocketRegistry;
+import org.openhab.binding.sonypjtalk.simulator.ProjectorSimulator;
+import org.openhab.binding.sonypjtalk.simulator.SimulatedProjector;
+
+/**
+ * Load test of the polling and control paths of the binding against
+ * simulated projectors, wired as a fleet bridge wires its projectors: one
+ * event loop, one registry and one {@link PollScheduler}.
+ *
+ * Every projector is polled for its power status at a fixed interval and
+ * receives a power command, alternately on and off, at another interval.
+ * When the test ends, the metrics of every projector are summed up and
+ * printed, with the time it took for every projector to be polled once.
+ *
+ * Options are given as name=value arguments, for example
+ * {@code java -cp target/benchmarks.jar org.openhab.binding.sonypjtalk.benchmark.LoadTest devices=500 latency=50 drop=0.01}:
+ * <ul>
+ * <li>devices: count of projectors, 256 by default</li>
+ * <li>duration: of the test in seconds, 60 by default</li>
+ * <li>pollInterval: between two polls of a projector in milliseconds, 5000 by default</li>
+ * <li>commandInterval: between two power commands to a projector in milliseconds, 20000 by default</li>
+ * <li>maxPollRate: polls per second of the poll scheduler, {@link PollScheduler#DEFAULT_MAX_POLL_RATE} by
+ * default</li>
+ * <li>startupWindow: over which the first polls are spread in milliseconds,
+ * {@link PollScheduler#DEFAULT_STAGGER_WINDOW} by default</li>
+ * <li>maxConcurrentConnects and maxInFlight: limits of the {@link AdmissionController},
+ * {@link AdmissionController#DEFAULT_MAX_CONCURRENT_CONNECTS} and {@link AdmissionController#DEFAULT_MAX_IN_FLIGHT}
+ * by default</li>
+ * <li>latency and jitter: of the projectors in milliseconds, 20 and 30 by default</li>
+ * <li>drop and garbage: rates of the requests dropped and of the responses preceded by garbage, 0 by default</li>
+ * </ul>
+ *
+ * @author Fabien Philippe - Initial contribution
+ *
+ */
+public class LoadTest {
+    private final Map<String, String> _options;
+
+    private final LongAdder _polls = new LongAdder();
+
+    private final LongAdder _failedPolls = new LongAdder();
+
+    private final LongAdder _commands = new LongAdder();
+
+    private final LongAdder _failedCommands = new LongAdder();
+
+    private final LongAdder _polledOnce = new LongAdder();
+
+    /**
+     * Time at which the last projector polled for the first time has been polled.
+     */
+    private final AtomicLong _lastFirstPoll = new AtomicLong();
+
+    private volatile boolean _running = true;
+
+    private LoadTest(Map<String, String> options) {
+        _options = options;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (separator < 0) {
+                throw new IllegalArgumentException("expected name=value: " + arg);
+            }
+            options.put(arg.substring(0, separator), arg.substring(separator + 1));
+        }
+        new LoadTest(options).run();
+    }
+
+    private void run() throws Exception {
+        int devices = (int) option("devices", 256);
+        long duration = option("duration", 60);
+        long pollInterval = option("pollInterval", 5000);
+        long commandInterval = option("commandInterval", 20000);
+
+        ProjectorSimulator simulator = new ProjectorSimulator();
+        SDCPEventLoop eventLoop = new SDCPEventLoop("SDCP-event-loop-load-test");
+        eventLoop.start();
+        SDCPSocketRegistry registry = new SDCPSocketRegistry(eventLoop,
+                new AdmissionController(eventLoop,
+                        (int) option("maxConcurrentConnects", AdmissionController.DEFAULT_MAX_CONCURRENT_CONNECTS),
+                        (int) option("maxInFlight", AdmissionController.DEFAULT_MAX_IN_FLIGHT)));
+        PollScheduler pollScheduler = new PollScheduler(eventLoop,
+                (int) option("maxPollRate", PollScheduler.DEFAULT_MAX_POLL_RATE),
+                option("startupWindow", PollScheduler.DEFAULT_STAGGER_WINDOW));
+        pollScheduler.start();
+
+        String host = InetAddress.getLoopbackAddress().getHostAddress();
+        ProjectorConnection[] connections = new ProjectorConnection[devices];
+        for (int i = 0; i < devices; i++) {
+            SimulatedProjector projector = new SimulatedProjector("VPL-HW65ES",
+                    new byte[] { 10, 0, (byte) (i >> 8), (byte) i });
+            projector.setLatency(option("latency", 20), option("jitter", 30));
+            projector.setDropRate(Double.parseDouble(_options.getOrDefault("drop", "0")));
+            projector.setGarbageRate(Double.parseDouble(_options.getOrDefault("garbage", "0")));
+            projector.setPowerCycle(commandInterval / 4, commandInterval / 2);
+            connections[i] = new ProjectorConnection(registry, host, simulator.add(projector), "SONY");
+        }
+
+        System.out.println("load test: " + devices + " projectors for " + duration + "s");
+        long start = System.currentTimeMillis();
+        for (ProjectorConnection connection : connections) {
+            schedulePoll(pollScheduler, connection, pollScheduler.stagger(), pollInterval, true);
+            scheduleCommand(pollScheduler, connection, pollScheduler.stagger() + commandInterval / 2, commandInterval,
+                    true);
+        }
+        TimeUnit.SECONDS.sleep(duration);
+        _running = false;
+
+        pollScheduler.stop();
+        long requests = 0;
+        long timeouts = 0;
+        long refused = 0;
+        long headerMismatches = 0;
+        long reconnects = 0;
+        long maxQueueDepth = 0;
+        LatencyHistogram responseTimes = new LatencyHistogram();
+        LatencyHistogram pollSkews = new LatencyHistogram();
+        for (ProjectorConnection connection : connections) {
+            SDCPMetrics metrics = connection.getMetrics();
+            requests += metrics.getRequests();
+            timeouts += metrics.getTimeouts();
+            refused += metrics.getRefused();
+            headerMismatches += metrics.getHeaderMismatches();
+            reconnects += metrics.getReconnects();
+            maxQueueDepth = Math.max(maxQueueDepth, metrics.getMaxQueueDepth());
+            responseTimes.add(metrics.getAllResponseTimes());
+            pollSkews.add(metrics.getPollSkews());
+            connection.close();
+        }
+        eventLoop.execute(eventLoop::stop);
+        simulator.stop();
+
+        System.out.println(String.format("polls=%d failed=%d commands=%d failed=%d", _polls.sum(),
+                _failedPolls.sum(), _commands.sum(), _failedCommands.sum()));
+        System.out.println(String.format("polledOnce=%d in %d ms", _polledOnce.sum(),
+                _polledOnce.sum() > 0 ? _lastFirstPoll.get() - start : 0));
+        System.out.println(String.format(
+                "requests=%d timeouts=%d refused=%d headerMismatches=%d reconnects=%d maxQueueDepth=%d", requests,
+                timeouts, refused, headerMismatches, reconnects, maxQueueDepth));
+        System.out.println("responseTime[" + responseTimes + "]");
+        System.out.println("pollSkew[" + pollSkews + "]");
+    }
+
+    private void schedulePoll(PollScheduler pollScheduler, ProjectorConnection connection, long delay,
+            long interval, boolean first) {
+        long due = System.currentTimeMillis() + delay;
+        pollScheduler.schedule(() -> {
+            if (!_running) {
+                return;
+            }
+            connection.getMetrics().recordPollSkew(System.currentTimeMillis() - due);
+            connection.getPowerStatusAsync(ProjectorConnection.DEFAULT_TIMEOUT).whenComplete((status, failure) -> {
+                (null == failure ? _polls : _failedPolls).increment();
+                boolean polledOnce = first && null == failure;
+                if (polledOnce) {
+                    _polledOnce.increment();
+                    _lastFirstPoll.accumulateAndGet(System.currentTimeMillis(), Math::max);
+                }
+                schedulePoll(pollScheduler, connection, interval, interval, first && !polledOnce);
+            });
+        }, delay);
+    }
+
+    private void scheduleCommand(PollScheduler pollScheduler, ProjectorConnection connection, long delay,
+            long interval, boolean on) {
+        pollScheduler.schedule(() -> {
+            if (!_running) {
+                return;
+            }
+            connection.setPowerStatusAsync(on, ProjectorConnection.DEFAULT_TIMEOUT).whenComplete((result, failure) -> {
+                (null == failure ? _commands : _failedCommands).increment();
+                scheduleCommand(pollScheduler, connection, interval, interval, !on);
+            });
+        }, delay);
+    }
+
+    private long option(String name, long defaultValue) {
+        String value = _options.get(name);
+        return null == value ? defaultValue : Long.parseLong(value);
+    }
+}
@@ -0,0 +1,122 @@
+/**
+ * Copyright (c) 2010-2018 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.sonypjtalk.benchmark;
+
+import java.net.InetAddress;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.openhab.binding.sonypjtalk.internal.ProjectorConnection;
+import org.openhab.binding.sonypjtalk.internal.SDCPItem;
+import org.openhab.binding.sonypjtalk.simulator.ProjectorSimulator;
+import org.openhab.binding.sonypjtalk.simulator.SimulatedProjector;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Full round trips thru {@link ProjectorConnection}, against simulated
+ * projectors answering on loopback without latency, so that round trips
+ * measure the binding and not the projector. Every operation is sent to
+ * every projector at once, and ends when every projector answered.
+ *
+ * @author Fabien Philippe - Initial contribution
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RoundTripBenchmark {
+    private static final Set<SDCPItem<?>> STATUS_ITEMS = new HashSet<>(
+            Arrays.asList(SDCPItem.POWER_STATUS, SDCPItem.LAMP_TIMER, SDCPItem.MODEL_NAME, SDCPItem.IP));
+
+    @Param({ "1", "32", "256" })
+    public int devices;
+
+    @Param({ "1", "4" })
+    public int pipelineDepth;
+
+    private ProjectorSimulator simulator;
+
+    private ProjectorConnection[] connections;
+
+    private CompletableFuture<?>[] futures;
+
+    @Setup
+    public void setup() throws Exception {
+        simulator = new ProjectorSimulator();
+        String host = InetAddress.getLoopbackAddress().getHostAddress();
+        connections = new ProjectorConnection[devices];
+        futures = new CompletableFuture<?>[devices];
+        for (int i = 0; i < devices; i++) {
+            int port = simulator.add(new SimulatedProjector("VPL-HW65ES", new byte[] { 10, 0, 0, 5 }));
+            connections[i] = new ProjectorConnection(host, port, "SONY");
+            connections[i].setPipelineDepth(pipelineDepth);
+        }
+
+        // Connections are opened before measuring
+        getPowerStatus();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        for (ProjectorConnection connection : connections) {
+            connection.close();
+        }
+        simulator.stop();
+    }
+
+    /**
+     * A poll of the power status of every projector.
+     */
+    @Benchmark
+    public Object getPowerStatus() {
+        for (int i = 0; i < devices; i++) {
+            futures[i] = connections[i].getPowerStatusAsync(ProjectorConnection.DEFAULT_TIMEOUT);
+        }
+        return CompletableFuture.allOf(futures).join();
+    }
+
+    /**
+     * A poll of 4 items of every projector.
+     */
+    @Benchmark
+    public Object getStatus() {
+        for (int i = 0; i < devices; i++) {
+            futures[i] = connections[i].getStatusAsync(STATUS_ITEMS, ProjectorConnection.DEFAULT_TIMEOUT);
+        }
+        return CompletableFuture.allOf(futures).join();
+    }
+
+    /**
+     * A power command sent to every projector.
+     */
+    @Benchmark
+    public Object setPowerStatus() {
+        for (int i = 0; i < devices; i++) {
+            futures[i] = connections[i].setPowerStatusAsync(true, ProjectorConnection.DEFAULT_TIMEOUT);
+        }
+        return CompletableFuture.allOf(futures).join();
+    }
+}
@@ -0,0 +1,445 @@
+/**
+ * Copyright (c) 2010-2018 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.sonypjtalk.simulator;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-process SDCP server hosting {@link SimulatedProjector}s, each one
+ * listening on its own port, all of them served by a single thread so that
+ * hundreds of them can run next to the binding.
+ *
+ * Every request is answered after the latency of its projector, in order on
+ * a connection as a real projector does. A request can be dropped without
+ * answer, and a response can be preceded by garbage bytes. A projector
+ * limited to one connection closes any connection opened while another one
+ * is open.
+ *
+ * Get requests of the power status (0x0102), lamp timer (0x0113), model name
+ * (0x8001) and ip (0x9001) are answered with the values of the projector, and
+ * Set commands of power on and off (0x172e, 0x172f) drive its power cycle.
+ * Any other request is answered with an error.
+ *
+ * It can also run on its own, for a binding installed in openHAB to poll
+ * the simulated projectors. As the binding connects to the SDCP port,
+ * projectors listen on consecutive addresses, the loopback network of
+ * Linux answering on every 127.x.y.z address. Options are given as
+ * name=value arguments, for example
+ * {@code java -cp target/benchmarks.jar org.openhab.binding.sonypjtalk.simulator.ProjectorSimulator devices=100 latency=50}:
+ * <ul>
+ * <li>devices: count of projectors, 1 by default</li>
+ * <li>address: of the first projector, 127.0.1.1 by default</li>
+ * <li>port: of every projector, 53484 by default</li>
+ * <li>latency and jitter: in milliseconds, 0 by default</li>
+ * <li>drop and garbage: rates of the requests dropped and of the responses preceded by garbage, 0 by default</li>
+ * <li>warmUp and coolDown: durations of the power cycle in milliseconds, 30000 and 60000 by default</li>
+ * <li>singleConnection: false to accept several connections per projector, true by default</li>
+ * </ul>
+ *
+ * @author Fabien Philippe - Initial contribution
+ *
+ */
+public class ProjectorSimulator implements Runnable {
+    private static final int HEADER_LENGTH = 10;
+
+    private static final int BUFFER_SIZE = 4096;
+
+    private static final byte RESPONSE_OK = 0x01;
+
+    private static final byte RESPONSE_ERROR = 0x00;
+
+    private static final int MAX_GARBAGE_LENGTH = 16;
+
+    /**
+     * A projector listening on a port.
+     */
+    private static final class Server {
+        private final SimulatedProjector _projector;
+        private int _connections;
+
+        private Server(SimulatedProjector projector) {
+            _projector = projector;
+        }
+    }
+
+    /**
+     * A connection to a projector, its received bytes and its responses not
+     * written yet.
+     */
+    private static final class Connection {
+        private final Server _server;
+        private final SocketChannel _channel;
+        private final ByteBuffer _in = ByteBuffer.allocate(BUFFER_SIZE);
+        private final Queue<ByteBuffer> _out = new ArrayDeque<>();
+        private long _lastDue;
+        private boolean _closed;
+
+        private Connection(Server server, SocketChannel channel) {
+            _server = server;
+            _channel = channel;
+        }
+    }
+
+    /**
+     * A response waiting for the latency of its projector.
+     */
+    private static final class Response implements Comparable<Response> {
+        private final Connection _connection;
+        private final ByteBuffer _frame;
+        private final long _due;
+        private final long _sequence;
+
+        private Response(Connection connection, ByteBuffer frame, long due, long sequence) {
+            _connection = connection;
+            _frame = frame;
+            _due = due;
+            _sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(Response other) {
+            int order = Long.compare(_due, other._due);
+            return 0 != order ? order : Long.compare(_sequence, other._sequence);
+        }
+    }
+
+    private final Selector _selector;
+
+    private final Queue<Runnable> _tasks = new ConcurrentLinkedQueue<>();
+
+    private final PriorityQueue<Response> _responses = new PriorityQueue<>();
+
+    private final Random _random = new Random();
+
+    private final Thread _thread;
+
+    private long _sequence;
+
+    private volatile boolean _running = true;
+
+    public ProjectorSimulator() throws IOException {
+        _selector = Selector.open();
+        _thread = new Thread(this, "projector-simulator");
+        _thread.setDaemon(true);
+        _thread.start();
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (separator < 0) {
+                throw new IllegalArgumentException("expected name=value: " + arg);
+            }
+            options.put(arg.substring(0, separator), arg.substring(separator + 1));
+        }
+        int devices = Integer.parseInt(options.getOrDefault("devices", "1"));
+        int port = Integer.parseInt(options.getOrDefault("port", "53484"));
+        byte[] address = InetAddress.getByName(options.getOrDefault("address", "127.0.1.1")).getAddress();
+        int firstAddress = ((address[0] & 0xFF) << 24) | ((address[1] & 0xFF) << 16) | ((address[2] & 0xFF) << 8)
+                | (address[3] & 0xFF);
+
+        ProjectorSimulator simulator = new ProjectorSimulator();
+        for (int i = 0; i < devices; i++) {
+            int ip = firstAddress + i;
+            byte[] ipBytes = new byte[] { (byte) (ip >> 24), (byte) (ip >> 16), (byte) (ip >> 8), (byte) ip };
+            SimulatedProjector projector = new SimulatedProjector("VPL-HW65ES", ipBytes);
+            projector.setLatency(Long.parseLong(options.getOrDefault("latency", "0")),
+                    Long.parseLong(options.getOrDefault("jitter", "0")));
+            projector.setDropRate(Double.parseDouble(options.getOrDefault("drop", "0")));
+            projector.setGarbageRate(Double.parseDouble(options.getOrDefault("garbage", "0")));
+            projector.setPowerCycle(Long.parseLong(options.getOrDefault("warmUp", "30000")),
+                    Long.parseLong(options.getOrDefault("coolDown", "60000")));
+            projector.setSingleConnection(Boolean.parseBoolean(options.getOrDefault("singleConnection", "true")));
+            InetAddress projectorAddress = InetAddress.getByAddress(ipBytes);
+            simulator.add(projector, new InetSocketAddress(projectorAddress, port));
+            System.out.println("projector " + projectorAddress.getHostAddress() + ":" + port);
+        }
+        simulator._thread.join();
+    }
+
+    /**
+     * Starts a projector on an ephemeral port of the loopback address.
+     *
+     * @param projector to start
+     * @return the port it listens on
+     * @throws IOException if the port can't be opened
+     */
+    public int add(SimulatedProjector projector) throws IOException {
+        return add(projector, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+    }
+
+    /**
+     * Starts a projector.
+     *
+     * @param projector to start
+     * @param address to listen on
+     * @return the port it listens on
+     * @throws IOException if the port can't be opened
+     */
+    public int add(SimulatedProjector projector, InetSocketAddress address) throws IOException {
+        ServerSocketChannel server = ServerSocketChannel.open();
+        try {
+            server.bind(address);
+            server.configureBlocking(false);
+        } catch (IOException e) {
+            server.close();
+            throw e;
+        }
+        // Channels are registered by the simulator thread, that holds the selector while selecting
+        _tasks.add(() -> {
+            try {
+                server.register(_selector, SelectionKey.OP_ACCEPT, new Server(projector));
+            } catch (IOException e) {
+                close(server);
+            }
+        });
+        _selector.wakeup();
+        return ((InetSocketAddress) server.getLocalAddress()).getPort();
+    }
+
+    /**
+     * Stops every projector.
+     */
+    public void stop() throws InterruptedException {
+        _running = false;
+        _selector.wakeup();
+        _thread.join();
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (_running) {
+                Runnable task;
+                while (null != (task = _tasks.poll())) {
+                    task.run();
+                }
+                writeDueResponses();
+
+                Response next = _responses.peek();
+                if (null == next) {
+                    _selector.select();
+                } else {
+                    long delay = next._due - now();
+                    if (delay > 0) {
+                        _selector.select(delay);
+                    } else {
+                        _selector.selectNow();
+                    }
+                }
+
+                Iterator<SelectionKey> keys = _selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept(key);
+                        continue;
+                    }
+                    Connection connection = (Connection) key.attachment();
+                    try {
+                        if (key.isReadable()) {
+                            read(connection);
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            write(connection);
+                        }
+                    } catch (IOException e) {
+                        close(connection);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            // stopped
+        } finally {
+            for (SelectionKey key : _selector.keys()) {
+                close(key.channel());
+            }
+            close(_selector);
+        }
+    }
+
+    private void accept(SelectionKey key) {
+        Server server = (Server) key.attachment();
+        SocketChannel channel;
+        try {
+            channel = ((ServerSocketChannel) key.channel()).accept();
+        } catch (IOException e) {
+            return;
+        }
+        if (null == channel) {
+            return;
+        }
+
+        if (server._projector.isSingleConnection() && server._connections > 0) {
+            // A real projector closes any other connection right away
+            close(channel);
+            return;
+        }
+        try {
+            channel.configureBlocking(false);
+            // Responses are written one by one, and must not wait for the acknowledgement of the previous one
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            Connection connection = new Connection(server, channel);
+            channel.register(_selector, SelectionKey.OP_READ, connection);
+            server._connections++;
+        } catch (IOException e) {
+            close(channel);
+        }
+    }
+
+    private void read(Connection connection) throws IOException {
+        ByteBuffer in = connection._in;
+        if (-1 == connection._channel.read(in)) {
+            throw new IOException("closed");
+        }
+
+        in.flip();
+        while (in.remaining() >= HEADER_LENGTH) {
+            int length = HEADER_LENGTH + (in.get(in.position() + HEADER_LENGTH - 1) & 0xFF);
+            if (in.remaining() < length) {
+                break;
+            }
+            receive(connection, in);
+            in.position(in.position() + length);
+        }
+        in.compact();
+    }
+
+    /**
+     * Handles the request at the position of a buffer, and schedules its response.
+     */
+    private void receive(Connection connection, ByteBuffer request) {
+        SimulatedProjector projector = connection._server._projector;
+        long now = now();
+        int start = request.position();
+        int type = request.get(start + 6);
+        int itemNumber = ((request.get(start + 7) & 0xFF) << 8) | (request.get(start + 8) & 0xFF);
+
+        byte[] data;
+        boolean success;
+        if (0x01 == type) {
+            data = projector.get(itemNumber, now);
+            success = null != data;
+            if (!success) {
+                data = errorCode(SimulatedProjector.ERROR_ITEM);
+            }
+        } else {
+            int error = projector.set(itemNumber, now);
+            success = 0 == error;
+            data = success ? new byte[0] : errorCode(error);
+        }
+
+        if (projector.dropRequest() || _random.nextDouble() < projector.getDropRate()) {
+            return;
+        }
+
+        int garbage = _random.nextDouble() < projector.getGarbageRate() ? 1 + _random.nextInt(MAX_GARBAGE_LENGTH)
+                : 0;
+        ByteBuffer frame = ByteBuffer.allocate(garbage + HEADER_LENGTH + data.length);
+        for (int i = 0; i < garbage; i++) {
+            frame.put((byte) _random.nextInt(256));
+        }
+        // version, category and community are the ones of the request
+        for (int i = 0; i < 6; i++) {
+            frame.put(request.get(start + i));
+        }
+        frame.put(success ? RESPONSE_OK : RESPONSE_ERROR);
+        frame.put((byte) (itemNumber >> 8));
+        frame.put((byte) itemNumber);
+        frame.put((byte) data.length);
+        frame.put(data);
+        frame.flip();
+
+        long jitter = projector.getJitter();
+        long due = now + projector.getLatency() + (jitter > 0 ? (long) (_random.nextDouble() * jitter) : 0);
+        // Responses of a connection are sent in the order of the requests
+        due = Math.max(due, connection._lastDue);
+        connection._lastDue = due;
+        _responses.add(new Response(connection, frame, due, _sequence++));
+    }
+
+    private void writeDueResponses() {
+        long now = now();
+        Response response;
+        while (null != (response = _responses.peek()) && response._due <= now) {
+            _responses.poll();
+            Connection connection = response._connection;
+            if (connection._closed) {
+                continue;
+            }
+            connection._out.add(response._frame);
+            try {
+                write(connection);
+            } catch (IOException e) {
+                close(connection);
+            }
+        }
+    }
+
+    private void write(Connection connection) throws IOException {
+        ByteBuffer frame;
+        while (null != (frame = connection._out.peek())) {
+            connection._channel.write(frame);
+            if (frame.hasRemaining()) {
+                break;
+            }
+            connection._out.poll();
+        }
+        SelectionKey key = connection._channel.keyFor(_selector);
+        if (null != key && key.isValid()) {
+            key.interestOps(connection._out.isEmpty() ? SelectionKey.OP_READ
+                    : SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        }
+    }
+
+    private void close(Connection connection) {
+        if (!connection._closed) {
+            connection._closed = true;
+            connection._server._connections--;
+            close(connection._channel);
+        }
+    }
+
+    private static byte[] errorCode(int error) {
+        return new byte[] { (byte) (error >> 8), (byte) error };
+    }
+
+    private static long now() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+    }
+
+    private static void close(AutoCloseable closeable) {
+        try {
+            closeable.close();
+        } catch (Exception e) {
+        }
+    }
+}
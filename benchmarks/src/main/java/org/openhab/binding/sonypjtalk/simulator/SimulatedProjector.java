@@ -0,0 +1,226 @@
+/**
+ * Copyright (c) 2010-2018 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.sonypjtalk.simulator;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A projector simulated by the {@link ProjectorSimulator}: its power cycle,
+ * the values of its items, and how badly its network behaves.
+ *
+ * The power cycle follows the power commands: startup then startup lamp
+ * until the warm-up time elapsed, then power on; cooling 1 then cooling 2
+ * until the cool-down time elapsed, then standby. The lamp timer counts the
+ * hours spent with the lamp on, one hour per {@link #setHourLength(long)}.
+ *
+ * Settings can be changed while the simulator runs.
+ *
+ * @author Fabien Philippe - Initial contribution
+ *
+ */
+public class SimulatedProjector {
+    /**
+     * Power statuses, as sent in the data of item 0x0102.
+     */
+    static final int STANDBY = 0;
+    static final int STARTUP = 1;
+    static final int STARTUP_LAMP = 2;
+    static final int POWER_ON = 3;
+    static final int COOLING_1 = 4;
+    static final int COOLING_2 = 5;
+
+    /**
+     * Error codes of the refused requests.
+     */
+    static final int ERROR_ITEM = 0x0101;
+    static final int ERROR_NOT_APPLICABLE = 0x0201;
+
+    private final String _modelName;
+    private final byte[] _ip;
+
+    private volatile long _latency;
+    private volatile long _jitter;
+    private volatile double _dropRate;
+    private volatile double _garbageRate;
+    private final AtomicInteger _dropNext = new AtomicInteger();
+    private volatile boolean _singleConnection = true;
+    private volatile long _warmUpTime = 30000;
+    private volatile long _coolDownTime = 60000;
+    private volatile long _hourLength = 3600000;
+
+    /**
+     * Power cycle, only accessed by the simulator thread: whether the projector
+     * has been powered on, since when, and the lamp time before.
+     */
+    private boolean _on;
+    private long _powerTime = Long.MIN_VALUE / 2;
+    private long _lampTime;
+
+    /**
+     * @param modelName sent in item 0x8001
+     * @param ip sent in item 0x9001, 4 bytes
+     */
+    public SimulatedProjector(String modelName, byte[] ip) {
+        _modelName = modelName;
+        _ip = ip.clone();
+    }
+
+    /**
+     * @param latency delay before every response, in milliseconds
+     * @param jitter maximum delay added at random to the latency, in milliseconds
+     */
+    public void setLatency(long latency, long jitter) {
+        _latency = Math.max(0, latency);
+        _jitter = Math.max(0, jitter);
+    }
+
+    /**
+     * @param dropRate part of the requests that are never answered, between 0 and 1
+     */
+    public void setDropRate(double dropRate) {
+        _dropRate = dropRate;
+    }
+
+    /**
+     * @param count of the next requests that are never answered, whatever the drop rate
+     */
+    public void dropNext(int count) {
+        _dropNext.set(Math.max(0, count));
+    }
+
+    /**
+     * @param garbageRate part of the responses preceded by garbage bytes, between 0 and 1
+     */
+    public void setGarbageRate(double garbageRate) {
+        _garbageRate = garbageRate;
+    }
+
+    /**
+     * @param singleConnection true to close the connections opened while another
+     *            one is open, as real projectors do
+     */
+    public void setSingleConnection(boolean singleConnection) {
+        _singleConnection = singleConnection;
+    }
+
+    /**
+     * @param warmUpTime from the power on command to power on, in milliseconds
+     * @param coolDownTime from the power off command to standby, in milliseconds
+     */
+    public void setPowerCycle(long warmUpTime, long coolDownTime) {
+        _warmUpTime = Math.max(0, warmUpTime);
+        _coolDownTime = Math.max(0, coolDownTime);
+    }
+
+    /**
+     * @param hourLength duration of an hour of the lamp timer, in milliseconds
+     */
+    public void setHourLength(long hourLength) {
+        _hourLength = Math.max(1, hourLength);
+    }
+
+    long getLatency() {
+        return _latency;
+    }
+
+    long getJitter() {
+        return _jitter;
+    }
+
+    double getDropRate() {
+        return _dropRate;
+    }
+
+    /**
+     * @return true if the request received must not be answered because of {@link #dropNext(int)}
+     */
+    boolean dropRequest() {
+        return _dropNext.getAndUpdate(count -> Math.max(0, count - 1)) > 0;
+    }
+
+    double getGarbageRate() {
+        return _garbageRate;
+    }
+
+    boolean isSingleConnection() {
+        return _singleConnection;
+    }
+
+    /**
+     * Handles a Set command.
+     *
+     * @param itemNumber of the command
+     * @param now current time in milliseconds
+     * @return 0 if the command is accepted, otherwise the error code
+     */
+    int set(int itemNumber, long now) {
+        switch (itemNumber) {
+            case 0x172e:
+            case 0x172f:
+                boolean on = 0x172e == itemNumber;
+                if (on != _on) {
+                    int status = getPowerStatus(now);
+                    if (on ? COOLING_1 == status || COOLING_2 == status : STARTUP == status) {
+                        // Real projectors don't accept a command in the middle of a transition
+                        return ERROR_NOT_APPLICABLE;
+                    }
+                    if (!on) {
+                        _lampTime += Math.max(0, now - _powerTime);
+                    }
+                    _on = on;
+                    _powerTime = now;
+                }
+                return 0;
+            default:
+                return ERROR_ITEM;
+        }
+    }
+
+    /**
+     * Handles a Get command.
+     *
+     * @param itemNumber of the request
+     * @param now current time in milliseconds
+     * @return the data of the response, null if the item is not known
+     */
+    byte[] get(int itemNumber, long now) {
+        switch (itemNumber) {
+            case 0x0102:
+                return new byte[] { 0, (byte) getPowerStatus(now) };
+            case 0x0113:
+                long lampTime = _lampTime + (_on ? Math.max(0, now - _powerTime) : 0);
+                long hours = Math.min(0xFFFF, lampTime / _hourLength);
+                return new byte[] { (byte) (hours >> 8), (byte) hours };
+            case 0x8001:
+                byte[] name = new byte[16];
+                byte[] chars = _modelName.getBytes(StandardCharsets.US_ASCII);
+                System.arraycopy(chars, 0, name, 0, Math.min(chars.length, name.length));
+                return name;
+            case 0x9001:
+                return _ip.clone();
+            default:
+                return null;
+        }
+    }
+
+    private int getPowerStatus(long now) {
+        long elapsed = now - _powerTime;
+        if (_on) {
+            if (elapsed >= _warmUpTime) {
+                return POWER_ON;
+            }
+            return elapsed < _warmUpTime / 4 ? STARTUP : STARTUP_LAMP;
+        }
+        if (elapsed >= _coolDownTime) {
+            return STANDBY;
+        }
+        return elapsed < _coolDownTime / 2 ? COOLING_1 : COOLING_2;
+    }
+}
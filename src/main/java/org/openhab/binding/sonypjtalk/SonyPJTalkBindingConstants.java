@@ -19,15 +19,45 @@ import org.eclipse.jdt.annotation.NonNullByDefault;
  */
 public class SonyPJTalkBindingConstants {
 
-    private static final String BINDING_ID = "sonypjtalk";
+    public static final String BINDING_ID = "sonypjtalk";
 
     // List of all Thing Type UIDs
     public static final ThingTypeUID THING_TYPE_PROJECTOR = new ThingTypeUID(BINDING_ID, "projector");
+    public static final ThingTypeUID THING_TYPE_FLEET = new ThingTypeUID(BINDING_ID, "fleet");
 
     // List of all Channel ids
     public static final String CHANNEL_POWER = "power";
     public static final String CHANNEL_POWERSTATUS = "powerStatus";
     public static final String CHANNEL_MODELNAME = "modelName";
     public static final String CHANNEL_LAMPTIMER = "lampTimer";
+    public static final String CHANNEL_TRANSITION_END = "transitionEnd";
+    public static final String CHANNEL_RESPONSE_TIME = "responseTime";
+    public static final String CHANNEL_POLL_SKEW = "pollSkew";
+    public static final String CHANNEL_TIMEOUTS = "timeouts";
+    public static final String CHANNEL_RECONNECTS = "reconnects";
+    public static final String CHANNEL_QUEUE_DEPTH = "queueDepth";
+    public static final String CHANNEL_COMMAND_RESULT = "commandResult";
+    public static final String CHANNEL_COMMAND_DURATION = "commandDuration";
+
+    // List of all Configuration parameters
+    public static final String CONFIG_IP_ADDRESS = "ipAddress";
+    public static final String CONFIG_COMMUNITY = "community";
+    public static final String CONFIG_HEARTBEAT = "heartbeat";
+    public static final String CONFIG_PIPELINE_DEPTH = "pipelineDepth";
+    public static final String CONFIG_ADVERTISED_STATUS = "advertisedStatus";
+    public static final String CONFIG_CONNECTION_POLICY = "connectionPolicy";
+    public static final String CONFIG_IDLE_TIMEOUT = "idleTimeout";
+    public static final String CONFIG_LEASE_TIME = "leaseTime";
+    public static final String CONFIG_HANDOFF_WINDOW = "handoffWindow";
+
+    // List of all Configuration parameters of a fleet
+    public static final String CONFIG_MAX_POLL_RATE = "maxPollRate";
+    public static final String CONFIG_STARTUP_WINDOW = "startupWindow";
+    public static final String CONFIG_MAX_CONCURRENT_CONNECTS = "maxConcurrentConnects";
+    public static final String CONFIG_MAX_IN_FLIGHT = "maxInFlight";
+
+    // List of the properties read from the device, kept across restarts
+    public static final String PROPERTY_IP = "ip";
+    public static final String PROPERTY_LAMP_HOURS = "lampHours";
 
 }
@@ -0,0 +1,206 @@
+/**
+ * Copyright (c) 2010-2018 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.sonypjtalk.handler;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.smarthome.core.library.types.DecimalType;
+import org.eclipse.smarthome.core.library.types.StringType;
+import org.eclipse.smarthome.core.thing.Bridge;
+import org.eclipse.smarthome.core.thing.ChannelUID;
+import org.eclipse.smarthome.core.thing.Thing;
+import org.eclipse.smarthome.core.thing.ThingStatus;
+import org.eclipse.smarthome.core.thing.ThingStatusDetail;
+import org.eclipse.smarthome.core.thing.ThingUID;
+import org.eclipse.smarthome.core.thing.binding.BaseBridgeHandler;
+import org.eclipse.smarthome.core.thing.binding.ThingHandler;
+import org.eclipse.smarthome.core.types.Command;
+import org.eclipse.smarthome.core.types.RefreshType;
+import org.openhab.binding.sonypjtalk.SonyPJTalkBindingConstants;
+import org.openhab.binding.sonypjtalk.internal.AdmissionController;
+import org.openhab.binding.sonypjtalk.internal.PollScheduler;
+import org.openhab.binding.sonypjtalk.internal.SDCPEventLoop;
+import org.openhab.binding.sonypjtalk.internal.SDCPSocketRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The {@link SonyPJTalkFleetHandler} groups projectors: a command sent to one
+ * of its channels is sent to every member projector at once, so that the
+ * whole fleet is done as soon as its slowest projector is.
+ *
+ * Once every projector answered or failed, the result of each projector and
+ * the duration of the command are published.
+ *
+ * The fleet also owns the transport of its projectors: their connections are
+ * driven by a single event loop, and their polls are scheduled by a single
+ * {@link PollScheduler} on this loop, that staggers them and limits their rate.
+ * The count of threads doesn't grow with the fleet. An {@link AdmissionController}
+ * bounds the connections being opened and the requests in flight of the
+ * whole fleet, so that a restart or a network outage doesn't make every
+ * projector connect at once.
+ *
+ * @author Fabien Philippe - Initial contribution
+ */
+public class SonyPJTalkFleetHandler extends BaseBridgeHandler {
+
+    private final Logger logger = LoggerFactory.getLogger(SonyPJTalkFleetHandler.class);
+
+    /**
+     * Transport and polls of the projectors of the fleet.
+     */
+    private volatile SDCPEventLoop eventLoop;
+    private volatile SDCPSocketRegistry registry;
+    private volatile PollScheduler pollScheduler;
+
+    public SonyPJTalkFleetHandler(Bridge bridge) {
+        super(bridge);
+    }
+
+    @Override
+    public void initialize() {
+        try {
+            eventLoop = new SDCPEventLoop("SDCP-event-loop-" + getThing().getUID().getId());
+        } catch (IOException e) {
+            updateStatus(ThingStatus.OFFLINE, ThingStatusDetail.COMMUNICATION_ERROR, e.getMessage());
+            return;
+        }
+        eventLoop.start();
+        registry = new SDCPSocketRegistry(eventLoop,
+                new AdmissionController(eventLoop,
+                        integer(SonyPJTalkBindingConstants.CONFIG_MAX_CONCURRENT_CONNECTS,
+                                AdmissionController.DEFAULT_MAX_CONCURRENT_CONNECTS),
+                        integer(SonyPJTalkBindingConstants.CONFIG_MAX_IN_FLIGHT,
+                                AdmissionController.DEFAULT_MAX_IN_FLIGHT)));
+        Object startupWindow = this.getConfig().get(SonyPJTalkBindingConstants.CONFIG_STARTUP_WINDOW);
+        pollScheduler = new PollScheduler(eventLoop,
+                integer(SonyPJTalkBindingConstants.CONFIG_MAX_POLL_RATE, PollScheduler.DEFAULT_MAX_POLL_RATE),
+                startupWindow instanceof Number ? TimeUnit.SECONDS.toMillis(((Number) startupWindow).longValue())
+                        : PollScheduler.DEFAULT_STAGGER_WINDOW);
+        pollScheduler.start();
+
+        // The fleet has no connection of its own
+        updateStatus(ThingStatus.ONLINE);
+    }
+
+    @Override
+    public void dispose() {
+        super.dispose();
+        // The members must not use the transport anymore: they start again
+        // once the fleet is initialized again and goes online
+        for (Thing thing : getThing().getThings()) {
+            ThingHandler handler = thing.getHandler();
+            if (handler instanceof SonyPJTalkHandler) {
+                ((SonyPJTalkHandler) handler).fleetOffline();
+            }
+        }
+        PollScheduler pollScheduler = this.pollScheduler;
+        SDCPEventLoop eventLoop = this.eventLoop;
+        this.pollScheduler = null;
+        this.registry = null;
+        this.eventLoop = null;
+        if (null != pollScheduler) {
+            pollScheduler.stop();
+        }
+        if (null != eventLoop) {
+            // the loop closes the sockets left before stopping
+            eventLoop.execute(eventLoop::stop);
+        }
+    }
+
+    /**
+     * @param name of an integer configuration parameter
+     * @param defaultValue used when the parameter is not set
+     * @return the value of the parameter
+     */
+    private int integer(String name, int defaultValue) {
+        Object value = this.getConfig().get(name);
+        return value instanceof Number ? ((Number) value).intValue() : defaultValue;
+    }
+
+    /**
+     * @return registry of the connections of the projectors of the fleet, null if
+     *         the fleet is not initialized
+     */
+    public SDCPSocketRegistry getRegistry() {
+        return registry;
+    }
+
+    /**
+     * @return scheduler of the polls of the projectors of the fleet, null if the
+     *         fleet is not initialized
+     */
+    public PollScheduler getPollScheduler() {
+        return pollScheduler;
+    }
+
+    @Override
+    public void handleCommand(ChannelUID channelUID, Command command) {
+        String channelId = channelUID.getId();
+        if (command.equals(RefreshType.REFRESH) || channelId.equals(SonyPJTalkBindingConstants.CHANNEL_COMMAND_RESULT)
+                || channelId.equals(SonyPJTalkBindingConstants.CHANNEL_COMMAND_DURATION)) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        Map<ThingUID, CompletableFuture<Void>> results = new LinkedHashMap<>();
+        for (Thing thing : getThing().getThings()) {
+            ThingHandler handler = thing.getHandler();
+            if (handler instanceof SonyPJTalkHandler) {
+                results.put(thing.getUID(), ((SonyPJTalkHandler) handler).execute(channelId, command));
+            }
+        }
+
+        if (results.isEmpty()) {
+            logger.debug("Command {} to {} of {}: no projector", command, channelId, getThing().getUID());
+            return;
+        }
+
+        CompletableFuture.allOf(results.values().toArray(new CompletableFuture<?>[results.size()]))
+                .whenComplete((nothing, exception) -> report(channelId, command, results, start));
+    }
+
+    /**
+     * Publishes the result of a command sent to every projector.
+     *
+     * @param channelId id of the channel receiving the command
+     * @param command sent to the projectors
+     * @param results completed result of every projector
+     * @param start of the command, as given by {@link System#nanoTime()}
+     */
+    private void report(String channelId, Command command, Map<ThingUID, CompletableFuture<Void>> results,
+            long start) {
+        long duration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        StringBuilder summary = new StringBuilder();
+        int failures = 0;
+        for (Map.Entry<ThingUID, CompletableFuture<Void>> result : results.entrySet()) {
+            String outcome = "OK";
+            try {
+                result.getValue().join();
+            } catch (CompletionException | CancellationException e) {
+                Throwable cause = null == e.getCause() ? e : e.getCause();
+                outcome = cause.getClass().getSimpleName();
+                failures++;
+            }
+            summary.append(summary.length() > 0 ? ", " : "").append(result.getKey().getId()).append(": ")
+                    .append(outcome);
+        }
+
+        logger.info("Command {} to {} of {}: {} of {} projectors failed in {} ms", command, channelId,
+                getThing().getUID(), failures, results.size(), duration);
+        updateState(SonyPJTalkBindingConstants.CHANNEL_COMMAND_RESULT, new StringType(summary.toString()));
+        updateState(SonyPJTalkBindingConstants.CHANNEL_COMMAND_DURATION, new DecimalType(duration));
+    }
+}
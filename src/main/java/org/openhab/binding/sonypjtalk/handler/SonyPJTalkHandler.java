@@ -8,21 +8,51 @@
  */
 package org.openhab.binding.sonypjtalk.handler;
 
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 
+import org.eclipse.smarthome.core.library.types.DateTimeType;
 import org.eclipse.smarthome.core.library.types.DecimalType;
 import org.eclipse.smarthome.core.library.types.OnOffType;
-import org.eclipse.smarthome.core.library.types.StringType;
+import org.eclipse.smarthome.core.thing.Bridge;
 import org.eclipse.smarthome.core.thing.ChannelUID;
 import org.eclipse.smarthome.core.thing.Thing;
 import org.eclipse.smarthome.core.thing.ThingStatus;
 import org.eclipse.smarthome.core.thing.ThingStatusDetail;
+import org.eclipse.smarthome.core.thing.ThingStatusInfo;
 import org.eclipse.smarthome.core.thing.binding.BaseThingHandler;
 import org.eclipse.smarthome.core.types.Command;
 import org.eclipse.smarthome.core.types.RefreshType;
+import org.eclipse.smarthome.core.types.State;
+import org.eclipse.smarthome.core.types.UnDefType;
 import org.openhab.binding.sonypjtalk.SonyPJTalkBindingConstants;
+import org.openhab.binding.sonypjtalk.internal.ConnectionPolicy;
+import org.openhab.binding.sonypjtalk.internal.ItemChannel;
+import org.openhab.binding.sonypjtalk.internal.PollScheduler;
+import org.openhab.binding.sonypjtalk.internal.PollingPolicy;
+import org.openhab.binding.sonypjtalk.internal.PowerStatus;
+import org.openhab.binding.sonypjtalk.internal.PowerTransitionTracker;
 import org.openhab.binding.sonypjtalk.internal.ProjectorConnection;
+import org.openhab.binding.sonypjtalk.internal.ProjectorStatus;
+import org.openhab.binding.sonypjtalk.internal.SDAPAdvertisement;
+import org.openhab.binding.sonypjtalk.internal.SDAPListener;
+import org.openhab.binding.sonypjtalk.internal.SDCPItem;
+import org.openhab.binding.sonypjtalk.internal.SDCPMetrics;
+import org.openhab.binding.sonypjtalk.internal.SDCPSocket;
+import org.openhab.binding.sonypjtalk.internal.SDCPSocketRegistry;
+import org.openhab.binding.sonypjtalk.internal.StatusCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -35,9 +65,75 @@ import org.slf4j.LoggerFactory;
 public class SonyPJTalkHandler extends BaseThingHandler {
 
     private final Logger logger = LoggerFactory.getLogger(SonyPJTalkHandler.class);
-    private ProjectorConnection connection;
+    private volatile ProjectorConnection connection;
+    private PollingPolicy pollingPolicy;
+
+    /**
+     * Power cycle of the projector. It keeps the durations it learnt when the
+     * handler is initialized again.
+     */
+    private final PowerTransitionTracker powerTracker = new PowerTransitionTracker();
+    private final StatusCache statusCache = new StatusCache();
     private ScheduledFuture<?> connectionCheckerFuture;
-    private int successCheck = 0;
+
+    /**
+     * Time the next check of the connection is scheduled for, to measure the skew of the polls.
+     */
+    private volatile long nextCheckTime;
+
+    /**
+     * Delay between two publications of the diagnostic channels, in milliseconds.
+     */
+    private static final long METRICS_INTERVAL = 60000;
+    private long metricsPublishTime;
+
+    /**
+     * Scheduler of the polls of the fleet of the projector, null if it doesn't
+     * belong to a fleet: polls are then scheduled on the scheduler of the handler.
+     */
+    private PollScheduler pollScheduler;
+    private PollScheduler.Task pollTask;
+
+    /**
+     * Registry of the connection, given by the fleet of the projector, or the
+     * default registry if it doesn't belong to a fleet.
+     */
+    private SDCPSocketRegistry registry;
+    private boolean checking;
+
+    /**
+     * Last state published on every channel, and when it has been published.
+     */
+    private final Map<String, State> publishedStates = new HashMap<>();
+    private final Map<String, Long> publishedTimes = new HashMap<>();
+    private ThingStatus publishedStatus;
+
+    /**
+     * Delay after which an unchanged state is published again, in milliseconds. 0 to never publish it again.
+     */
+    private long heartbeat;
+
+    /**
+     * When the status is advertised, delay after which the connection is closed
+     * when it is not used, in milliseconds.
+     */
+    private static final long ADVERTISED_IDLE_TIMEOUT = 5000;
+
+    /**
+     * Minimum delay before the values kept in the properties of the thing are
+     * read again from the projector, in milliseconds. Projectors of a fleet
+     * revalidate them at random times up to twice this delay.
+     */
+    private static final long REVALIDATION_DELAY = 60000;
+
+    /**
+     * Identification of the projector in the SDAP advertisements: its configured
+     * address, and its serial number once known.
+     */
+    private final SDAPListener.Listener advertisementListener = this::advertisementReceived;
+    private InetAddress hostAddress;
+    private String community;
+    private Integer serialNumber;
 
     public SonyPJTalkHandler(Thing thing) {
         super(thing);
@@ -46,8 +142,52 @@ public class SonyPJTalkHandler extends BaseThingHandler {
     @Override
     public void dispose() {
         super.dispose();
-        if (connectionCheckerFuture != null) {
-            connectionCheckerFuture.cancel(true);
+        stop();
+    }
+
+    @Override
+    public void bridgeStatusChanged(ThingStatusInfo bridgeStatusInfo) {
+        if (ThingStatus.ONLINE != bridgeStatusInfo.getStatus()) {
+            fleetOffline();
+            return;
+        }
+
+        SonyPJTalkFleetHandler fleet = getFleet();
+        synchronized (this) {
+            if (checking && null != fleet && registry == fleet.getRegistry()) {
+                return;
+            }
+        }
+        // The fleet has been initialized again, with a new transport
+        stop();
+        initialize();
+    }
+
+    /**
+     * Stops polling the projector and closes its connection, because the
+     * transport of its fleet is going to be stopped.
+     */
+    void fleetOffline() {
+        stop();
+        synchronized (this) {
+            publishedStatus = ThingStatus.OFFLINE;
+        }
+        updateStatus(ThingStatus.OFFLINE, ThingStatusDetail.BRIDGE_OFFLINE);
+    }
+
+    /**
+     * Stops listening to the projector, polling it and closes its connection.
+     */
+    private void stop() {
+        SDAPListener.getInstance().removeListener(advertisementListener);
+        synchronized (this) {
+            checking = false;
+            if (connectionCheckerFuture != null) {
+                connectionCheckerFuture.cancel(true);
+            }
+            if (pollTask != null) {
+                pollTask.cancel();
+            }
         }
         if (connection != null) {
             connection.close();
@@ -56,48 +196,127 @@ public class SonyPJTalkHandler extends BaseThingHandler {
 
     @Override
     public void handleCommand(ChannelUID channelUID, Command command) {
-        if (channelUID.getId().equals(SonyPJTalkBindingConstants.CHANNEL_POWER)) {
-            if (command.equals(OnOffType.ON)) {
-                connection.setPowerStatus(true);
-            } else if (command.equals(OnOffType.OFF)) {
-                connection.setPowerStatus(false);
-            } else if (command.equals(RefreshType.REFRESH)) {
-                String powerStatus = connection.getPowerStatus();
-                updateState(SonyPJTalkBindingConstants.CHANNEL_POWER,
-                        ("standby" != powerStatus) ? OnOffType.ON : OnOffType.OFF);
-                updateState(SonyPJTalkBindingConstants.CHANNEL_POWERSTATUS, new StringType(powerStatus));
-            }
-        } else if (channelUID.getId().equals(SonyPJTalkBindingConstants.CHANNEL_POWERSTATUS)) {
-            if (command.equals(RefreshType.REFRESH)) {
-                String powerStatus = connection.getPowerStatus();
-                updateState(SonyPJTalkBindingConstants.CHANNEL_POWER,
-                        ("standby" != powerStatus) ? OnOffType.ON : OnOffType.OFF);
-                updateState(SonyPJTalkBindingConstants.CHANNEL_POWERSTATUS, new StringType(powerStatus));
-            }
-        } else if (channelUID.getId().equals(SonyPJTalkBindingConstants.CHANNEL_MODELNAME)) {
-            if (command.equals(RefreshType.REFRESH)) {
-                String modelName = connection.getModelName();
-                updateState(SonyPJTalkBindingConstants.CHANNEL_MODELNAME, new StringType(modelName));
+        ItemChannel<?> channel = ItemChannel.fromChannelId(channelUID.getId());
+        if (null == channel) {
+            return;
+        }
+
+        if (command.equals(RefreshType.REFRESH)) {
+            refresh(channel.getItem());
+        } else {
+            execute(channelUID.getId(), command).whenComplete((nothing, exception) -> {
+                if (null != exception) {
+                    logger.debug("Command {} to {} of {} failed: {}", command, channelUID.getId(),
+                            getThing().getUID(), exception.toString());
+                }
+            });
+        }
+    }
+
+    /**
+     * Sends a command to the projector, as if it was sent to one of its channels.
+     * The states of the channels are updated once the projector acknowledged it.
+     *
+     * @param channelId id of the channel receiving the command
+     * @param command sent to the channel
+     * @return a future completed when the projector acknowledged the command. It
+     *         fails with an {@link IllegalArgumentException} if the channel doesn't
+     *         accept the command.
+     */
+    public CompletableFuture<Void> execute(String channelId, Command command) {
+        ItemChannel<?> channel = ItemChannel.fromChannelId(channelId);
+        ProjectorConnection connection = this.connection;
+        if (null == channel || null == connection) {
+            return rejected(channelId, command);
+        }
+
+        if (channelId.equals(SonyPJTalkBindingConstants.CHANNEL_POWER)) {
+            if (!command.equals(OnOffType.ON) && !command.equals(OnOffType.OFF)) {
+                return rejected(channelId, command);
             }
-        } else if (channelUID.getId().equals(SonyPJTalkBindingConstants.CHANNEL_LAMPTIMER)) {
-            if (command.equals(RefreshType.REFRESH)) {
-                Integer lampTimer = connection.getLampTimer();
-                updateState(SonyPJTalkBindingConstants.CHANNEL_LAMPTIMER, new DecimalType(lampTimer));
+            boolean on = command.equals(OnOffType.ON);
+            return connection.setPowerStatusAsync(on, ProjectorConnection.DEFAULT_TIMEOUT).thenRun(() -> {
+                PollingPolicy pollingPolicy = this.pollingPolicy;
+                if (null != pollingPolicy) {
+                    pollingPolicy.powerCommanded(on, System.currentTimeMillis());
+                    pollSoon();
+                }
+            });
+        }
+        return write(connection, channel, command);
+    }
+
+    /**
+     * Writes a command to the item of a channel, then publishes the value written.
+     *
+     * @param connection to the projector
+     * @param channel receiving the command
+     * @param command sent to the channel
+     * @return a future completed when the projector acknowledged the command
+     */
+    private <T> CompletableFuture<Void> write(ProjectorConnection connection, ItemChannel<T> channel,
+            Command command) {
+        T value = channel.toValue(command);
+        if (null == value) {
+            return rejected(channel.getChannelId(), command);
+        }
+
+        return connection.setAsync(channel.getItem(), value, ProjectorConnection.DEFAULT_TIMEOUT)
+                .thenRun(() -> {
+                    statusCache.update(channel.getItem(), value, System.currentTimeMillis());
+                    updateChannels(channel.getItem(), value, false);
+                });
+    }
+
+    private static CompletableFuture<Void> rejected(String channelId, Command command) {
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        result.completeExceptionally(
+                new IllegalArgumentException("command " + command + " not accepted by channel " + channelId));
+        return result;
+    }
+
+    @Override
+    public void channelLinked(ChannelUID channelUID) {
+        super.channelLinked(channelUID);
+        ItemChannel<?> channel = ItemChannel.fromChannelId(channelUID.getId());
+        if (null != channel && null != pollingPolicy) {
+            pollingPolicy.link(channel.getItem(), System.currentTimeMillis());
+        }
+    }
+
+    @Override
+    public void channelUnlinked(ChannelUID channelUID) {
+        super.channelUnlinked(channelUID);
+        ItemChannel<?> channel = ItemChannel.fromChannelId(channelUID.getId());
+        if (null != channel && null != pollingPolicy && !isItemLinked(channel.getItem())) {
+            pollingPolicy.unlink(channel.getItem());
+        }
+    }
+
+    /**
+     * @param item of the projector
+     * @return true if a linked channel shows the item
+     */
+    private boolean isItemLinked(SDCPItem<?> item) {
+        for (ItemChannel<?> channel : ItemChannel.values()) {
+            if (channel.getItem() == item && isLinked(channel.getChannelId())) {
+                return true;
             }
         }
+        return false;
     }
 
     @Override
     public void initialize() {
         try {
-            String host = this.getConfig().get("ipAddress").toString();
+            String host = this.getConfig().get(SonyPJTalkBindingConstants.CONFIG_IP_ADDRESS).toString();
             if (host == null || host.isEmpty()) {
                 updateStatus(ThingStatus.OFFLINE, ThingStatusDetail.CONFIGURATION_ERROR,
                         "No network address specified");
                 return;
             }
 
-            String community = this.getConfig().get("community").toString();
+            community = this.getConfig().get(SonyPJTalkBindingConstants.CONFIG_COMMUNITY).toString();
             if (community == null || community.isEmpty()) {
                 updateStatus(ThingStatus.OFFLINE, ThingStatusDetail.CONFIGURATION_ERROR, "No community specified");
                 return;
@@ -107,50 +326,75 @@ public class SonyPJTalkHandler extends BaseThingHandler {
                 return;
             }
 
-            connection = new ProjectorConnection(host, community);
+            // Recognizes the advertisements of the projector
+            try {
+                hostAddress = InetAddress.getByName(host);
+            } catch (UnknownHostException e) {
+                hostAddress = null;
+            }
+            serialNumber = restoreSerialNumber();
+
+            if (null != getThing().getBridgeUID()) {
+                // The connection is driven by the transport of the fleet
+                SonyPJTalkFleetHandler fleet = getFleet();
+                registry = null == fleet ? null : fleet.getRegistry();
+                pollScheduler = null == fleet ? null : fleet.getPollScheduler();
+                if (null == registry || null == pollScheduler
+                        || ThingStatus.ONLINE != fleet.getThing().getStatus()) {
+                    updateStatus(ThingStatus.OFFLINE, ThingStatusDetail.BRIDGE_OFFLINE);
+                    return;
+                }
+            } else {
+                registry = SDCPSocketRegistry.getDefault();
+                pollScheduler = null;
+            }
+            connection = new ProjectorConnection(registry, host, SDCPSocket.DEFAULT_PORT, community);
+            Object pipelineDepth = this.getConfig().get(SonyPJTalkBindingConstants.CONFIG_PIPELINE_DEPTH);
+            if (pipelineDepth instanceof Number) {
+                connection.setPipelineDepth(((Number) pipelineDepth).intValue());
+            }
+
+            heartbeat = seconds(SonyPJTalkBindingConstants.CONFIG_HEARTBEAT, 0);
+            synchronized (publishedStates) {
+                publishedStates.clear();
+                publishedTimes.clear();
+            }
 
             // Start the connection checker
-            Runnable connectionChecker = new Runnable() {
-                @Override
-                public void run() {
-                    try {
-                        // InetAddress ip = connection.getIp();
-                        String powerStatus = connection.getPowerStatus();
-                        if (null == powerStatus) {
-                            updateStatus(ThingStatus.OFFLINE);
-                        } else {
-                            updateStatus(ThingStatus.ONLINE);
-                            updateState(SonyPJTalkBindingConstants.CHANNEL_POWER,
-                                    ("standby" != powerStatus) ? OnOffType.ON : OnOffType.OFF);
-                            updateState(SonyPJTalkBindingConstants.CHANNEL_POWERSTATUS, new StringType(powerStatus));
-                            successCheck++;
-
-                            if (successCheck > 10) {
-                                // More or less, every minute, we will refresh lamp timer
-                                // and model name
-                                String modelName = connection.getModelName();
-                                if (null != modelName) {
-                                    updateState(SonyPJTalkBindingConstants.CHANNEL_MODELNAME,
-                                            new StringType(modelName));
-                                }
-
-                                Integer lampTimer = connection.getLampTimer();
-                                if (null != lampTimer) {
-                                    updateState(SonyPJTalkBindingConstants.CHANNEL_LAMPTIMER,
-                                            new DecimalType(lampTimer));
-                                }
-
-                                successCheck = 0;
-                            }
-                        }
-                    } catch (Exception ex) {
-                        logger.warn("Exception in check connection to @{}. Cause: {}", host, ex.getMessage());
-                    }
+            boolean advertisedStatus = Boolean.TRUE
+                    .equals(this.getConfig().get(SonyPJTalkBindingConstants.CONFIG_ADVERTISED_STATUS));
+            pollingPolicy = new PollingPolicy(System.currentTimeMillis(), advertisedStatus, powerTracker);
+            for (ItemChannel<?> channel : ItemChannel.values()) {
+                if (isLinked(channel.getChannelId())) {
+                    pollingPolicy.link(channel.getItem(), System.currentTimeMillis());
                 }
-            };
-            connectionCheckerFuture = scheduler.scheduleWithFixedDelay(connectionChecker, 1, 5, TimeUnit.SECONDS);
+            }
+            restoreProperties();
+            ConnectionPolicy connectionPolicy = ConnectionPolicy.of(
+                    (String) this.getConfig().get(SonyPJTalkBindingConstants.CONFIG_CONNECTION_POLICY),
+                    seconds(SonyPJTalkBindingConstants.CONFIG_IDLE_TIMEOUT, ConnectionPolicy.DEFAULT_IDLE_TIMEOUT),
+                    seconds(SonyPJTalkBindingConstants.CONFIG_LEASE_TIME, ConnectionPolicy.DEFAULT_LEASE_TIME),
+                    seconds(SonyPJTalkBindingConstants.CONFIG_HANDOFF_WINDOW, ConnectionPolicy.DEFAULT_HANDOFF_WINDOW));
+            if (advertisedStatus && ConnectionPolicy.Mode.PERSISTENT == connectionPolicy.getMode()) {
+                // The connection is only opened for commands and detailed items
+                connectionPolicy = ConnectionPolicy.idle(ADVERTISED_IDLE_TIMEOUT);
+            }
+            connection.setConnectionPolicy(connectionPolicy);
+            if (advertisedStatus) {
+                statusCache.setTtl(SDCPItem.POWER_STATUS, PollingPolicy.ADVERTISEMENT_TIMEOUT);
+            }
+            synchronized (this) {
+                checking = true;
+                scheduleConnectionCheck(1000 + (null == pollScheduler
+                        ? ThreadLocalRandom.current().nextLong(PollScheduler.DEFAULT_STAGGER_WINDOW)
+                        : pollScheduler.stagger()));
+            }
 
+            publishedStatus = ThingStatus.INITIALIZING;
             updateStatus(ThingStatus.INITIALIZING);
+
+            // Listen to the advertisements of the projector
+            SDAPListener.getInstance().addListener(advertisementListener);
         } catch (Exception e) {
             logger.debug("error during opening connection: {}", e.getMessage());
             updateStatus(ThingStatus.OFFLINE, ThingStatusDetail.COMMUNICATION_ERROR, e.getMessage());
@@ -165,4 +409,370 @@ public class SonyPJTalkHandler extends BaseThingHandler {
         // updateStatus(ThingStatus.OFFLINE, ThingStatusDetail.CONFIGURATION_ERROR,
         // "Can not access device as username and/or password are invalid");
     }
+
+    /**
+     * @param name of a configuration parameter in seconds
+     * @param defaultValue in milliseconds, if the parameter is not set
+     * @return value of the parameter in milliseconds
+     */
+    private long seconds(String name, long defaultValue) {
+        Object value = this.getConfig().get(name);
+        return value instanceof Number ? TimeUnit.SECONDS.toMillis(((Number) value).longValue()) : defaultValue;
+    }
+
+    /**
+     * Publishes at once the values read from the projector before the handler
+     * was initialized again, kept in the properties of the thing, and reads them
+     * again later, so that a restart doesn't burst requests to every projector.
+     */
+    private void restoreProperties() {
+        long now = System.currentTimeMillis();
+        long revalidation = now + REVALIDATION_DELAY + ThreadLocalRandom.current().nextLong(REVALIDATION_DELAY);
+        Map<String, String> properties = getThing().getProperties();
+
+        String modelName = properties.get(Thing.PROPERTY_MODEL_ID);
+        if (null != modelName) {
+            statusCache.update(SDCPItem.MODEL_NAME, modelName, now);
+            updateChannels(SDCPItem.MODEL_NAME, modelName, false);
+            pollingPolicy.revalidate(SDCPItem.MODEL_NAME, revalidation);
+        }
+
+        String lampHours = properties.get(SonyPJTalkBindingConstants.PROPERTY_LAMP_HOURS);
+        if (null != lampHours) {
+            try {
+                updateChannels(SDCPItem.LAMP_TIMER, Integer.valueOf(lampHours), false);
+                if (isItemLinked(SDCPItem.LAMP_TIMER)) {
+                    pollingPolicy.revalidate(SDCPItem.LAMP_TIMER, revalidation);
+                }
+            } catch (NumberFormatException e) {
+                logger.debug("Invalid lamp hours {} in the properties of {}", lampHours, getThing().getUID());
+            }
+        }
+
+        // The ip is only shown in the properties
+        pollingPolicy.revalidate(SDCPItem.IP, revalidation);
+    }
+
+    /**
+     * @return serial number of the projector kept in the properties of the thing,
+     *         null if it is unknown. An invalid serial number is removed, to be
+     *         learnt again from the advertisements.
+     */
+    private Integer restoreSerialNumber() {
+        String serial = getThing().getProperties().get(Thing.PROPERTY_SERIAL_NUMBER);
+        if (null == serial) {
+            return null;
+        }
+        try {
+            return Integer.parseUnsignedInt(serial);
+        } catch (NumberFormatException e) {
+            logger.debug("Invalid serial number {} in the properties of {}", serial, getThing().getUID());
+            updateProperty(Thing.PROPERTY_SERIAL_NUMBER, null);
+            return null;
+        }
+    }
+
+    /**
+     * Keeps in the properties of the thing the values read from the projector
+     * that are published at once when the handler is initialized again.
+     *
+     * @param status items read
+     */
+    private void storeProperties(ProjectorStatus status) {
+        Map<String, String> values = new HashMap<>();
+        if (null != status.getModelName()) {
+            values.put(Thing.PROPERTY_MODEL_ID, status.getModelName());
+        }
+        if (null != status.getLampTimer()) {
+            values.put(SonyPJTalkBindingConstants.PROPERTY_LAMP_HOURS, status.getLampTimer().toString());
+        }
+        if (null != status.getIp()) {
+            values.put(SonyPJTalkBindingConstants.PROPERTY_IP, status.getIp().getHostAddress());
+        }
+
+        Map<String, String> current = getThing().getProperties();
+        values.entrySet().removeIf(value -> value.getValue().equals(current.get(value.getKey())));
+        if (!values.isEmpty()) {
+            Map<String, String> properties = editProperties();
+            properties.putAll(values);
+            updateProperties(properties);
+        }
+    }
+
+    /**
+     * @return handler of the fleet of the projector, null if it doesn't belong to
+     *         an initialized fleet
+     */
+    private SonyPJTalkFleetHandler getFleet() {
+        Bridge bridge = getBridge();
+        if (null == bridge || !(bridge.getHandler() instanceof SonyPJTalkFleetHandler)) {
+            return null;
+        }
+        return (SonyPJTalkFleetHandler) bridge.getHandler();
+    }
+
+    /**
+     * Schedules the next check of the connection, unless the handler is disposed.
+     *
+     * @param delay before the check in milliseconds
+     */
+    private synchronized void scheduleConnectionCheck(long delay) {
+        if (!checking) {
+            return;
+        }
+        nextCheckTime = System.currentTimeMillis() + delay;
+        if (null != pollScheduler) {
+            try {
+                pollTask = pollScheduler.schedule(this::checkConnection, delay);
+            } catch (RejectedExecutionException e) {
+                // The fleet is stopping, and restarts the polls once initialized again
+                logger.debug("Poll of {} not scheduled: {}", getThing().getUID(), e.getMessage());
+            }
+        } else {
+            connectionCheckerFuture = scheduler.schedule(this::checkConnection, delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Brings the next check of the connection forward, as the polling policy may
+     * have changed its mind. A check already running schedules the next one itself.
+     */
+    private synchronized void pollSoon() {
+        if (!checking) {
+            return;
+        }
+        if (null != pollTask ? !pollTask.cancel()
+                : null != connectionCheckerFuture && !connectionCheckerFuture.cancel(false)) {
+            return;
+        }
+        scheduleConnectionCheck(pollingPolicy.nextPollDelay(System.currentTimeMillis()));
+    }
+
+    /**
+     * Polls the items that are due according to the polling policy, without
+     * blocking the scheduler thread, then schedules the next check.
+     */
+    private void checkConnection() {
+        long now = System.currentTimeMillis();
+        SDCPMetrics metrics = connection.getMetrics();
+        if (null != metrics) {
+            metrics.recordPollSkew(now - nextCheckTime);
+        }
+
+        Set<SDCPItem<?>> items = pollingPolicy.dueItems(now);
+        if (items.isEmpty()) {
+            polled(items, null);
+            return;
+        }
+
+        connection.getStatusAsync(items, ProjectorConnection.DEFAULT_TIMEOUT).whenComplete((status, exception) -> {
+            if (null != exception) {
+                logger.debug("Poll of {} failed: {}", getThing().getUID(), exception.toString());
+            }
+            polled(items, status);
+        });
+    }
+
+    /**
+     * Publishes the result of a poll, then schedules the next check.
+     *
+     * @param items polled, possibly none
+     * @param status result of the poll, null if the projector could not be reached
+     */
+    private void polled(Set<SDCPItem<?>> items, ProjectorStatus status) {
+        try {
+            long now = System.currentTimeMillis();
+            if (!items.isEmpty()) {
+                pollingPolicy.polled(items, status, now);
+            }
+
+            if (pollingPolicy.isUnreachable(now)) {
+                publishStatus(ThingStatus.OFFLINE);
+            } else if (null != status) {
+                statusCache.update(status, now);
+                for (SDCPItem<?> item : status.getItems()) {
+                    // Fresh until polled again, so that a refresh doesn't read it again
+                    Long ttl = pollingPolicy.getTtl(item, now);
+                    if (null != ttl) {
+                        statusCache.setTtl(item, ttl);
+                    }
+                }
+                if (!pollingPolicy.isAdvertisedStatus()) {
+                    // Otherwise, only advertisements tell that the projector is online
+                    publishStatus(ThingStatus.ONLINE);
+                }
+                updateChannels(status, false);
+                storeProperties(status);
+            }
+
+            if (now - metricsPublishTime >= METRICS_INTERVAL) {
+                metricsPublishTime = now;
+                publishMetrics();
+            }
+        } catch (Exception ex) {
+            logger.warn("Exception in check connection to @{}. Cause: {}",
+                    getConfig().get(SonyPJTalkBindingConstants.CONFIG_IP_ADDRESS), ex.getMessage());
+        } finally {
+            scheduleConnectionCheck(pollingPolicy.nextPollDelay(System.currentTimeMillis()));
+        }
+    }
+
+    /**
+     * Publishes the metrics of the communication with the projector on the
+     * diagnostic channels, and logs them all. Response times and poll skews
+     * are the ones of the last interval, so that a projector that just became
+     * slow stands out.
+     */
+    private void publishMetrics() {
+        SDCPMetrics metrics = connection.getMetrics();
+        if (null == metrics) {
+            return;
+        }
+
+        logger.debug("Metrics of {}: {}", getThing().getUID(), metrics);
+        publishMetric(SonyPJTalkBindingConstants.CHANNEL_RESPONSE_TIME,
+                metrics.takeAllResponseTimes().getPercentile(95));
+        publishMetric(SonyPJTalkBindingConstants.CHANNEL_POLL_SKEW, metrics.takePollSkews().getPercentile(95));
+        publishMetric(SonyPJTalkBindingConstants.CHANNEL_TIMEOUTS, metrics.getTimeouts());
+        publishMetric(SonyPJTalkBindingConstants.CHANNEL_RECONNECTS, metrics.getReconnects());
+        publishMetric(SonyPJTalkBindingConstants.CHANNEL_QUEUE_DEPTH, metrics.getMaxQueueDepth());
+    }
+
+    private void publishMetric(String channelId, long value) {
+        if (null != getThing().getChannel(channelId)) {
+            publishState(channelId, new DecimalType(value), false);
+        }
+    }
+
+    /**
+     * Uses the advertisements of the projector as free polls of its power
+     * status, and follows its address when it changes.
+     *
+     * @param advertisement received, only valid during the call
+     */
+    private void advertisementReceived(SDAPAdvertisement advertisement) {
+        if (!advertisement.isCommunity(community)) {
+            return;
+        }
+
+        boolean sameAddress = advertisement.getAddress().equals(hostAddress);
+        if (null == serialNumber) {
+            if (!sameAddress) {
+                return;
+            }
+            serialNumber = advertisement.getSerialNumber();
+            updateProperty(Thing.PROPERTY_SERIAL_NUMBER, Integer.toUnsignedString(serialNumber));
+        } else if (serialNumber != advertisement.getSerialNumber()) {
+            return;
+        } else if (!sameAddress) {
+            String address = advertisement.getAddress().getHostAddress();
+            logger.info("Projector {} moved from {} to {}", getThing().getUID(),
+                    getConfig().get(SonyPJTalkBindingConstants.CONFIG_IP_ADDRESS), address);
+            hostAddress = advertisement.getAddress();
+            scheduler.execute(() -> handleConfigurationUpdate(
+                    Collections.singletonMap(SonyPJTalkBindingConstants.CONFIG_IP_ADDRESS, address)));
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        PowerStatus powerStatus = advertisement.getPowerStatus();
+        if (pollingPolicy.advertised(powerStatus, now)) {
+            statusCache.update(SDCPItem.POWER_STATUS, powerStatus, now);
+            publishStatus(ThingStatus.ONLINE);
+            updateChannels(SDCPItem.POWER_STATUS, powerStatus, false);
+        }
+    }
+
+    /**
+     * Updates the channels of an item from the cache if it is fresh, otherwise
+     * requests it to be fetched from the projector.
+     *
+     * @param item of the projector
+     */
+    private void refresh(SDCPItem<?> item) {
+        Object value = statusCache.get(item, System.currentTimeMillis());
+        if (null != value) {
+            updateChannels(item, value, true);
+        } else if (statusCache.requestFetch(item)) {
+            scheduler.execute(this::fetchStaleItems);
+        }
+    }
+
+    /**
+     * Reads in one sweep every stale item that has been requested.
+     */
+    private void fetchStaleItems() {
+        Set<SDCPItem<?>> items = statusCache.startFetch();
+        connection.getStatusAsync(items, ProjectorConnection.DEFAULT_TIMEOUT).whenComplete((status, exception) -> {
+            statusCache.endFetch(items, status, System.currentTimeMillis());
+            if (null != status) {
+                updateChannels(status, true);
+                storeProperties(status);
+            }
+        });
+    }
+
+    /**
+     * Publishes the channels of every item read.
+     *
+     * @param status items read
+     * @param force true to publish the states even if they didn't change
+     */
+    private void updateChannels(ProjectorStatus status, boolean force) {
+        for (SDCPItem<?> item : status.getItems()) {
+            updateChannels(item, status.get(item), force);
+        }
+    }
+
+    private void updateChannels(SDCPItem<?> item, Object value, boolean force) {
+        for (ItemChannel<?> channel : ItemChannel.values()) {
+            if (channel.getItem() == item && null != getThing().getChannel(channel.getChannelId())) {
+                publishState(channel.getChannelId(), channel.toState(value), force);
+            }
+        }
+
+        if (SDCPItem.POWER_STATUS == item
+                && null != getThing().getChannel(SonyPJTalkBindingConstants.CHANNEL_TRANSITION_END)) {
+            Long end = powerTracker.getPredictedEnd();
+            publishState(SonyPJTalkBindingConstants.CHANNEL_TRANSITION_END,
+                    null == end ? UnDefType.UNDEF
+                            : new DateTimeType(
+                                    ZonedDateTime.ofInstant(Instant.ofEpochMilli(end), ZoneId.systemDefault())),
+                    force);
+        }
+    }
+
+    /**
+     * Updates the state of a channel, only if it changed since it has been last
+     * published or if the heartbeat delay elapsed.
+     *
+     * @param channelId of the channel
+     * @param state new state
+     * @param force true to publish the state even if it didn't change
+     */
+    private void publishState(String channelId, State state, boolean force) {
+        long now = System.currentTimeMillis();
+        synchronized (publishedStates) {
+            if (!force && state.equals(publishedStates.get(channelId))
+                    && (0 == heartbeat || now - publishedTimes.get(channelId) < heartbeat)) {
+                return;
+            }
+            publishedStates.put(channelId, state);
+            publishedTimes.put(channelId, now);
+        }
+        updateState(channelId, state);
+    }
+
+    /**
+     * Updates the status of the thing, only if it changed.
+     *
+     * @param status new status
+     */
+    private synchronized void publishStatus(ThingStatus status) {
+        if (!checking || status == publishedStatus) {
+            return;
+        }
+        publishedStatus = status;
+        updateStatus(status);
+    }
 }
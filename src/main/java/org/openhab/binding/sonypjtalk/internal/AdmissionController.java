@@ -0,0 +1,170 @@
+/**
+ * Copyright (c) 2010-2018 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.sonypjtalk.internal;
+
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class limits the connections being opened and the requests in flight
+ * of every {@link SDCPSocket} of a fleet, so that a restart or a network
+ * outage doesn't make hundreds of projectors connect and poll at once.
+ *
+ * A socket asks for a permit before opening its connection and before
+ * sending every request. When none is left, the socket waits in line: a
+ * released permit is handed over to the first socket waiting, by running
+ * its callback on the event loop. The callback must use the permit or
+ * release it. Sockets are served in the order they asked, so that none of
+ * them waits longer than its turn: with c connects at a time taking at most
+ * t each, n projectors are all connected within n / c * t.
+ *
+ * Every method must be called on the {@link SDCPEventLoop} of the fleet.
+ *
+ * @author Fabien Philippe - Initial contribution
+ *
+ */
+public class AdmissionController {
+    private final Logger logger = LoggerFactory.getLogger(AdmissionController.class);
+
+    /**
+     * Default count of connections being opened at the same time by a fleet.
+     */
+    public static final int DEFAULT_MAX_CONCURRENT_CONNECTS = 8;
+
+    /**
+     * Default count of requests in flight at the same time for a fleet.
+     */
+    public static final int DEFAULT_MAX_IN_FLIGHT = 64;
+
+    private final SDCPEventLoop _eventLoop;
+
+    private final Permits _connects;
+
+    private final Permits _requests;
+
+    /**
+     * Permits of a kind, and the callbacks of the sockets waiting for one.
+     */
+    private class Permits {
+        private final String _name;
+        private final int _max;
+        private int _used;
+        private final Set<Runnable> _waiting = new LinkedHashSet<>();
+
+        private Permits(String name, int max) {
+            _name = name;
+            _max = Math.max(1, max);
+        }
+
+        private boolean tryAcquire(Runnable onAdmitted) {
+            if (_used < _max && _waiting.isEmpty()) {
+                _used++;
+                return true;
+            }
+            if (_waiting.add(onAdmitted)) {
+                logger.trace("tryAcquire: {} of {} {} used, {} waiting", _used, _max, _name, _waiting.size());
+            }
+            return false;
+        }
+
+        private void release() {
+            Iterator<Runnable> waiting = _waiting.iterator();
+            if (!waiting.hasNext()) {
+                _used--;
+                return;
+            }
+
+            // The permit is handed over without being released
+            Runnable onAdmitted = waiting.next();
+            waiting.remove();
+            try {
+                _eventLoop.execute(onAdmitted);
+            } catch (RejectedExecutionException e) {
+                // The fleet is closing, nothing will be sent anymore
+                _used--;
+            }
+        }
+    }
+
+    /**
+     * @param eventLoop driving the sockets of the fleet
+     * @param maxConcurrentConnects count of connections being opened at the same time, at least 1
+     * @param maxInFlight count of requests in flight at the same time, at least 1
+     */
+    public AdmissionController(SDCPEventLoop eventLoop, int maxConcurrentConnects, int maxInFlight) {
+        _eventLoop = eventLoop;
+        _connects = new Permits("connects", maxConcurrentConnects);
+        _requests = new Permits("requests", maxInFlight);
+    }
+
+    /**
+     * Asks for the permit to open a connection.
+     *
+     * @param onAdmitted run on the event loop once the permit is handed over,
+     *            if it is not granted now
+     * @return true if the permit is granted now
+     */
+    public boolean tryAcquireConnect(Runnable onAdmitted) {
+        return _connects.tryAcquire(onAdmitted);
+    }
+
+    /**
+     * Releases the permit of a connection opened or failed.
+     */
+    public void releaseConnect() {
+        _connects.release();
+    }
+
+    /**
+     * Asks for the permit to send a request.
+     *
+     * @param onAdmitted run on the event loop once the permit is handed over,
+     *            if it is not granted now
+     * @return true if the permit is granted now
+     */
+    public boolean tryAcquireRequest(Runnable onAdmitted) {
+        return _requests.tryAcquire(onAdmitted);
+    }
+
+    /**
+     * Releases the permit of a request answered, failed or forgotten.
+     */
+    public void releaseRequest() {
+        _requests.release();
+    }
+
+    /**
+     * Stops waiting for the permits, for example because the socket is closed.
+     *
+     * @param onAdmitted callback given when asking for the permits
+     */
+    public void cancel(Runnable onAdmitted) {
+        _connects._waiting.remove(onAdmitted);
+        _requests._waiting.remove(onAdmitted);
+    }
+
+    /**
+     * @return count of sockets waiting to open their connection
+     */
+    public int getWaitingConnects() {
+        return _connects._waiting.size();
+    }
+
+    /**
+     * @return count of sockets waiting to send a request
+     */
+    public int getWaitingRequests() {
+        return _requests._waiting.size();
+    }
+}
@@ -0,0 +1,77 @@
+/**
+ * Copyright (c) 2010-2018 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.sonypjtalk.internal;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The executor owned by the binding, completing the futures returned by
+ * {@link ProjectorConnection}: callbacks of the callers never run on the
+ * event loop thread.
+ *
+ * Virtual threads are used when the runtime supports them. Otherwise a
+ * small pool of daemon threads is used, that stop when they are idle.
+ *
+ * @author Fabien Philippe - Initial contribution
+ *
+ */
+public class BindingExecutor {
+    private static final Logger logger = LoggerFactory.getLogger(BindingExecutor.class);
+
+    /**
+     * Count of threads of the pool, when virtual threads are not supported.
+     */
+    private static final int POOL_SIZE = 4;
+
+    /**
+     * Delay after which an idle thread of the pool stops, in seconds.
+     */
+    private static final long KEEP_ALIVE = 60;
+
+    private static final Executor EXECUTOR = create();
+
+    private BindingExecutor() {
+    }
+
+    /**
+     * @return the executor owned by the binding
+     */
+    public static Executor get() {
+        return EXECUTOR;
+    }
+
+    private static Executor create() {
+        try {
+            // Java 21 and later
+            ExecutorService executor = (ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            logger.debug("create: using virtual threads");
+            return executor;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            AtomicInteger count = new AtomicInteger();
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(POOL_SIZE, POOL_SIZE, KEEP_ALIVE, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(), runnable -> {
+                        Thread thread = new Thread(runnable, "SonyPJTalk-" + count.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+            executor.allowCoreThreadTimeOut(true);
+            return executor;
+        }
+    }
+}
@@ -0,0 +1,153 @@
+/**
+ * Copyright (c) 2010-2018 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.sonypjtalk.internal;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * This class decides when a connection to an unreachable device can be
+ * attempted again.
+ *
+ * After a failed attempt, the breaker is open: no attempt is allowed
+ * until a backoff delay elapsed. This delay doubles at every failure, up
+ * to a maximum, and is randomized so that devices that failed together
+ * are not retried together. Once the delay elapsed, the breaker is half
+ * open: a single probe attempt is allowed, that closes the breaker when
+ * it succeeds. A probe abandoned before it ended, or whose result is never
+ * reported, doesn't keep the breaker half open: another probe is allowed.
+ *
+ * Times are in milliseconds, as given by the caller.
+ *
+ * @author Fabien Philippe - Initial contribution
+ *
+ */
+public class CircuitBreaker {
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    /**
+     * Backoff delay after the first failure.
+     */
+    static final long MIN_BACKOFF = 1000;
+
+    /**
+     * Maximum backoff delay.
+     */
+    static final long MAX_BACKOFF = 60000;
+
+    /**
+     * Part of the backoff delay that is randomized.
+     */
+    private static final double JITTER = 0.2;
+
+    /**
+     * Delay after which a probe attempt whose result is not reported is
+     * forgotten, longer than a connection attempt waiting for its turn.
+     */
+    static final long PROBE_TIMEOUT = 60000;
+
+    private State _state = State.CLOSED;
+
+    private int _failures;
+
+    private long _retryTime;
+
+    private long _probeTime;
+
+    /**
+     * Asks for a connection attempt. If the backoff delay elapsed, the
+     * breaker becomes half open and the caller has to report the result
+     * of the attempt.
+     *
+     * @param now current time
+     * @return true if an attempt is allowed
+     */
+    public synchronized boolean allowAttempt(long now) {
+        switch (_state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (now - _retryTime < 0) {
+                    return false;
+                }
+                _state = State.HALF_OPEN;
+                _probeTime = now;
+                return true;
+            default:
+                if (now - _probeTime < PROBE_TIMEOUT) {
+                    // A probe attempt is already running
+                    return false;
+                }
+                _probeTime = now;
+                return true;
+        }
+    }
+
+    /**
+     * Reports a probe attempt abandoned before it ended, for example because
+     * the connection has been closed meanwhile. The next attempt is a probe
+     * again.
+     */
+    public synchronized void abandoned() {
+        if (State.HALF_OPEN == _state) {
+            _state = State.OPEN;
+        }
+    }
+
+    /**
+     * Reports a successful attempt, closing the breaker.
+     *
+     * @return true if the breaker was not closed
+     */
+    public synchronized boolean succeeded() {
+        boolean recovered = State.CLOSED != _state;
+        _state = State.CLOSED;
+        _failures = 0;
+        return recovered;
+    }
+
+    /**
+     * Reports a failed attempt, opening the breaker.
+     *
+     * @param now current time
+     * @return true if the breaker was closed
+     */
+    public synchronized boolean failed(long now) {
+        boolean opened = State.CLOSED == _state;
+        _failures++;
+        _state = State.OPEN;
+        _retryTime = now + backoff(_failures);
+        return opened;
+    }
+
+    /**
+     * @return current state of the breaker
+     */
+    public synchronized State getState() {
+        return _state;
+    }
+
+    /**
+     * @param now current time
+     * @return delay before the next attempt is allowed, 0 if it is allowed now
+     */
+    public synchronized long getRetryDelay(long now) {
+        return State.CLOSED == _state ? 0 : Math.max(0, _retryTime - now);
+    }
+
+    private static long backoff(int failures) {
+        long backoff = MIN_BACKOFF << Math.min(failures - 1, 16);
+        backoff = Math.min(backoff, MAX_BACKOFF);
+        double jitter = 1 + JITTER * (2 * ThreadLocalRandom.current().nextDouble() - 1);
+        return (long) (backoff * jitter);
+    }
+}
@@ -0,0 +1,150 @@
+/**
+ * Copyright (c) 2010-2018 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.sonypjtalk.internal;
+
+/**
+ * This class decides how long the connection to a PJTalk device is held,
+ * as devices accept a single connection at a time and other controllers
+ * may need it.
+ *
+ * <ul>
+ * <li>persistent: the connection is kept open.</li>
+ * <li>idle: the connection is closed once no request has been sent for
+ * the idle timeout, and opened again by the next request.</li>
+ * <li>lease: in addition, the connection is held at most for the lease
+ * time. Once it expired, no new request is sent: the connection is closed
+ * as soon as the requests sent are answered, and is not opened again
+ * before the handoff window elapsed, so that another controller gets a
+ * chance to connect. Requests submitted meanwhile are sent together on
+ * the next connection.</li>
+ * </ul>
+ *
+ * Times are in milliseconds.
+ *
+ * @author Fabien Philippe - Initial contribution
+ *
+ */
+public class ConnectionPolicy {
+    public enum Mode {
+        PERSISTENT,
+        IDLE,
+        LEASE
+    }
+
+    /**
+     * Default delay after which an unused connection is closed.
+     */
+    public static final long DEFAULT_IDLE_TIMEOUT = 5000;
+
+    /**
+     * Default maximum time a connection is held.
+     */
+    public static final long DEFAULT_LEASE_TIME = 30000;
+
+    /**
+     * Default delay left to other controllers once a lease expired.
+     */
+    public static final long DEFAULT_HANDOFF_WINDOW = 2000;
+
+    /**
+     * Keeps the connection open.
+     */
+    public static final ConnectionPolicy PERSISTENT = new ConnectionPolicy(Mode.PERSISTENT, 0, 0, 0);
+
+    private final Mode _mode;
+
+    private final long _idleTimeout;
+
+    private final long _leaseTime;
+
+    private final long _handoffWindow;
+
+    private ConnectionPolicy(Mode mode, long idleTimeout, long leaseTime, long handoffWindow) {
+        _mode = mode;
+        _idleTimeout = idleTimeout;
+        _leaseTime = leaseTime;
+        _handoffWindow = handoffWindow;
+    }
+
+    /**
+     * @param idleTimeout delay after which an unused connection is closed, 0 to
+     *            keep the connection open
+     * @return a policy closing unused connections
+     */
+    public static ConnectionPolicy idle(long idleTimeout) {
+        return idleTimeout <= 0 ? PERSISTENT : new ConnectionPolicy(Mode.IDLE, idleTimeout, 0, 0);
+    }
+
+    /**
+     * @param leaseTime maximum time a connection is held, at least 1
+     * @param handoffWindow delay before the connection is opened again once the
+     *            lease expired
+     * @param idleTimeout delay after which an unused connection is closed, 0 to
+     *            only close it when the lease expires
+     * @return a policy leasing the connection
+     */
+    public static ConnectionPolicy lease(long leaseTime, long handoffWindow, long idleTimeout) {
+        return new ConnectionPolicy(Mode.LEASE, Math.max(0, idleTimeout), Math.max(1, leaseTime),
+                Math.max(0, handoffWindow));
+    }
+
+    /**
+     * @param mode persistent, idle or lease, case insensitive. Any other value is
+     *            taken as persistent.
+     * @param idleTimeout delay after which an unused connection is closed
+     * @param leaseTime maximum time a connection is held
+     * @param handoffWindow delay left to other controllers once a lease expired
+     * @return the policy of the mode, with the times it uses
+     */
+    public static ConnectionPolicy of(String mode, long idleTimeout, long leaseTime, long handoffWindow) {
+        if (Mode.IDLE.name().equalsIgnoreCase(mode)) {
+            return idle(idleTimeout);
+        } else if (Mode.LEASE.name().equalsIgnoreCase(mode)) {
+            return lease(leaseTime, handoffWindow, idleTimeout);
+        }
+        return PERSISTENT;
+    }
+
+    public Mode getMode() {
+        return _mode;
+    }
+
+    /**
+     * @return delay after which an unused connection is closed, 0 to keep it open
+     */
+    public long getIdleTimeout() {
+        return _idleTimeout;
+    }
+
+    /**
+     * @return maximum time a connection is held, 0 if it is not leased
+     */
+    public long getLeaseTime() {
+        return _leaseTime;
+    }
+
+    /**
+     * @return delay before the connection is opened again once the lease expired
+     */
+    public long getHandoffWindow() {
+        return _handoffWindow;
+    }
+
+    @Override
+    public String toString() {
+        switch (_mode) {
+            case IDLE:
+                return "idle " + _idleTimeout + " ms";
+            case LEASE:
+                return "lease " + _leaseTime + " ms, handoff " + _handoffWindow + " ms, idle " + _idleTimeout + " ms";
+            default:
+                return "persistent";
+        }
+    }
+}
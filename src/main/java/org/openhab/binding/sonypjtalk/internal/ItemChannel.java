@@ -0,0 +1,162 @@
+/**
+ * Copyright (c) 2010-2018 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.sonypjtalk.internal;
+
+import static org.openhab.binding.sonypjtalk.SonyPJTalkBindingConstants.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+import org.eclipse.smarthome.core.library.types.DecimalType;
+import org.eclipse.smarthome.core.library.types.OnOffType;
+import org.eclipse.smarthome.core.library.types.StringType;
+import org.eclipse.smarthome.core.types.Command;
+import org.eclipse.smarthome.core.types.State;
+import org.eclipse.smarthome.core.types.UnDefType;
+
+/**
+ * Declarative description of a channel showing an {@link SDCPItem}: how the
+ * value of the item is shown, and how commands are written to the item.
+ *
+ * Every channel is declared in the thing type, with a channel type having
+ * the id of the channel.
+ *
+ * @author Fabien Philippe - Initial contribution
+ *
+ * @param <T> type of the value of the item
+ */
+public class ItemChannel<T> {
+    /**
+     * Every channel, in the order they are created.
+     */
+    private static final List<ItemChannel<?>> CHANNELS = new ArrayList<>();
+
+    static {
+        CHANNELS.add(new ItemChannel<>(CHANNEL_POWER, SDCPItem.POWER_STATUS, ItemChannel::power, null));
+        CHANNELS.add(new ItemChannel<>(CHANNEL_POWERSTATUS, SDCPItem.POWER_STATUS,
+                powerStatus -> new StringType(powerStatus.toString()), null));
+        CHANNELS.add(new ItemChannel<>(CHANNEL_MODELNAME, SDCPItem.MODEL_NAME, StringType::new, null));
+        CHANNELS.add(new ItemChannel<>(CHANNEL_LAMPTIMER, SDCPItem.LAMP_TIMER, DecimalType::new, null));
+        CHANNELS.add(label(SDCPItem.INPUT));
+        CHANNELS.add(label(SDCPItem.PICTURE_MODE));
+        CHANNELS.add(number(SDCPItem.CONTRAST));
+        CHANNELS.add(number(SDCPItem.BRIGHTNESS));
+        CHANNELS.add(number(SDCPItem.COLOR));
+        CHANNELS.add(number(SDCPItem.HUE));
+        CHANNELS.add(number(SDCPItem.SHARPNESS));
+        CHANNELS.add(label(SDCPItem.LAMP_CONTROL));
+        CHANNELS.add(label(SDCPItem.ASPECT));
+        CHANNELS.add(new ItemChannel<>(SDCPItem.PICTURE_MUTING.getId(), SDCPItem.PICTURE_MUTING,
+                muting -> muting ? OnOffType.ON : OnOffType.OFF,
+                command -> command instanceof OnOffType ? OnOffType.ON == command : null));
+        CHANNELS.add(new ItemChannel<>(SDCPItem.ERROR_STATUS.getId(), SDCPItem.ERROR_STATUS, StringType::new, null));
+    }
+
+    private final String _channelId;
+
+    private final SDCPItem<T> _item;
+
+    private final Function<T, State> _toState;
+
+    private final Function<Command, T> _toValue;
+
+    /**
+     * @param channelId id of the channel, and of its channel type
+     * @param item shown by the channel
+     * @param toState converting the value of the item to a state
+     * @param toValue converting a command to a value of the item, null if the channel is read only
+     */
+    private ItemChannel(String channelId, SDCPItem<T> item, Function<T, State> toState,
+            Function<Command, T> toValue) {
+        _channelId = channelId;
+        _item = item;
+        _toState = toState;
+        _toValue = toValue;
+    }
+
+    /**
+     * @return ON while the projector is warming up or on, OFF while it is cooling
+     *         down or in standby
+     */
+    private static State power(PowerStatus powerStatus) {
+        switch (powerStatus.getPhase()) {
+            case WARMING_UP:
+            case ON:
+                return OnOffType.ON;
+            case COOLING_DOWN:
+            case STANDBY:
+                return OnOffType.OFF;
+            default:
+                return UnDefType.UNDEF;
+        }
+    }
+
+    private static ItemChannel<String> label(SDCPItem<String> item) {
+        return new ItemChannel<>(item.getId(), item, StringType::new,
+                command -> command instanceof StringType ? command.toString() : null);
+    }
+
+    private static ItemChannel<Integer> number(SDCPItem<Integer> item) {
+        return new ItemChannel<>(item.getId(), item, DecimalType::new,
+                command -> command instanceof DecimalType ? ((DecimalType) command).intValue() : null);
+    }
+
+    /**
+     * @return every channel
+     */
+    public static List<ItemChannel<?>> values() {
+        return Collections.unmodifiableList(CHANNELS);
+    }
+
+    /**
+     * @param channelId id of a channel
+     * @return the channel, or null if it doesn't show an item
+     */
+    public static ItemChannel<?> fromChannelId(String channelId) {
+        for (ItemChannel<?> channel : CHANNELS) {
+            if (channel._channelId.equals(channelId)) {
+                return channel;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return id of the channel, and of its channel type
+     */
+    public String getChannelId() {
+        return _channelId;
+    }
+
+    /**
+     * @return item shown by the channel
+     */
+    public SDCPItem<T> getItem() {
+        return _item;
+    }
+
+    /**
+     * @param value of the item
+     * @return the state of the channel
+     */
+    public State toState(Object value) {
+        return _toState.apply(_item.cast(value));
+    }
+
+    /**
+     * @param command sent to the channel
+     * @return the value to be written to the item, or null if the command is not
+     *         accepted by the channel
+     */
+    public T toValue(Command command) {
+        return null == _toValue ? null : _toValue.apply(command);
+    }
+}
@@ -0,0 +1,142 @@
+/**
+ * Copyright (c) 2010-2018 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.sonypjtalk.internal;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram of durations in milliseconds, with a bucket per power of two:
+ * bucket 0 counts durations under 1 ms, bucket i durations from 2^(i-1) to
+ * 2^i ms, and the last bucket every longer duration.
+ *
+ * Recording a duration allocates nothing and takes no lock, so that it can
+ * be done on the event loop for every frame. Reading is done from any
+ * thread, and may see a recording half done.
+ *
+ * @author Fabien Philippe - Initial contribution
+ *
+ */
+public class LatencyHistogram {
+    /**
+     * Count of buckets: the last one starts at about 65 seconds.
+     */
+    private static final int BUCKETS = 18;
+
+    private final AtomicLongArray _buckets = new AtomicLongArray(BUCKETS);
+
+    private final LongAdder _count = new LongAdder();
+
+    private final LongAdder _sum = new LongAdder();
+
+    private final LongAccumulator _max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * @param duration in milliseconds, negative durations are counted as 0
+     */
+    public void record(long duration) {
+        long value = Math.max(0, duration);
+        _buckets.incrementAndGet(bucket(value));
+        _count.increment();
+        _sum.add(value);
+        _max.accumulate(value);
+    }
+
+    /**
+     * @return count of durations recorded
+     */
+    public long getCount() {
+        return _count.sum();
+    }
+
+    /**
+     * @return mean of the durations recorded in milliseconds, 0 if none
+     */
+    public long getMean() {
+        long count = _count.sum();
+        return 0 == count ? 0 : _sum.sum() / count;
+    }
+
+    /**
+     * @return longest duration recorded in milliseconds
+     */
+    public long getMax() {
+        return _max.get();
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return upper bound of the bucket holding the percentile in milliseconds,
+     *         bounded by the longest duration, 0 if nothing has been recorded
+     */
+    public long getPercentile(double percentile) {
+        long count = 0;
+        long[] buckets = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = _buckets.get(i);
+            count += buckets[i];
+        }
+        if (0 == count) {
+            return 0;
+        }
+
+        long rank = (long) Math.ceil(count * Math.min(100, Math.max(0, percentile)) / 100);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS - 1; i++) {
+            seen += buckets[i];
+            if (seen >= rank && seen > 0) {
+                return Math.min(1L << i, getMax());
+            }
+        }
+        return getMax();
+    }
+
+    /**
+     * Adds the durations recorded by another histogram to this one.
+     *
+     * @param other histogram
+     */
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            _buckets.addAndGet(i, other._buckets.get(i));
+        }
+        _count.add(other._count.sum());
+        _sum.add(other._sum.sum());
+        _max.accumulate(other._max.get());
+    }
+
+    /**
+     * Moves the durations recorded to a new histogram: this one then only holds
+     * the durations recorded after. A duration recorded meanwhile may be split
+     * between both histograms, but is never lost.
+     *
+     * @return histogram of the durations recorded until now
+     */
+    public LatencyHistogram takeSnapshot() {
+        LatencyHistogram snapshot = new LatencyHistogram();
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot._buckets.set(i, _buckets.getAndSet(i, 0));
+        }
+        snapshot._count.add(_count.sumThenReset());
+        snapshot._sum.add(_sum.sumThenReset());
+        snapshot._max.accumulate(_max.getThenReset());
+        return snapshot;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("count=%d mean=%dms p95=%dms max=%dms", getCount(), getMean(), getPercentile(95),
+                getMax());
+    }
+
+    private static int bucket(long duration) {
+        return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(duration));
+    }
+}
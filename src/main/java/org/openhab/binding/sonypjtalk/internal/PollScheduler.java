@@ -0,0 +1,252 @@
+/**
+ * Copyright (c) 2010-2018 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.sonypjtalk.internal;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class schedules the polls of every projector of a fleet on a timer
+ * wheel turned by the {@link SDCPEventLoop} of the fleet, so that the count
+ * of threads doesn't depend on the size of the fleet.
+ *
+ * The wheel has a slot per tick. A poll is put in the slot of its due tick,
+ * and counts the turns of the wheel it has to wait for. When it is due, it
+ * waits in a queue until the rate limit of the fleet allows it to be started.
+ * Polls are run on the {@link BindingExecutor}, never on the event loop.
+ *
+ * The first polls of the projectors are spread over the stagger window, by
+ * default the interval of the power status polls while projectors are on,
+ * so that the projectors of a fleet don't all hit the network at once and
+ * keep polling at different phases of the interval.
+ *
+ * @author Fabien Philippe - Initial contribution
+ *
+ */
+public class PollScheduler {
+    private final Logger logger = LoggerFactory.getLogger(PollScheduler.class);
+
+    /**
+     * Duration of a tick of the wheel, in milliseconds.
+     */
+    static final long TICK = 50;
+
+    /**
+     * Count of slots of the wheel: a turn lasts a bit more than 25 seconds.
+     */
+    private static final int WHEEL_SIZE = 512;
+
+    /**
+     * Default window over which the first polls are spread, in milliseconds.
+     */
+    public static final long DEFAULT_STAGGER_WINDOW = 5000;
+
+    /**
+     * Default count of polls started per second by a fleet.
+     */
+    public static final int DEFAULT_MAX_POLL_RATE = 20;
+
+    /**
+     * A poll scheduled on the wheel. It can be cancelled from any thread.
+     */
+    public static final class Task {
+        private static final int PENDING = 0;
+        private static final int CANCELLED = 1;
+        private static final int STARTED = 2;
+
+        private final Runnable _poll;
+        private long _rounds;
+        private final AtomicInteger _state = new AtomicInteger(PENDING);
+
+        private Task(Runnable poll) {
+            _poll = poll;
+        }
+
+        /**
+         * Prevents the poll from being run.
+         *
+         * @return false if the poll has already been started
+         */
+        public boolean cancel() {
+            return _state.compareAndSet(PENDING, CANCELLED) || CANCELLED == _state.get();
+        }
+
+        private boolean isCancelled() {
+            return CANCELLED == _state.get();
+        }
+    }
+
+    private final SDCPEventLoop _eventLoop;
+
+    private final Executor _executor = BindingExecutor.get();
+
+    /**
+     * Slots of the wheel, only accessed by the event loop thread.
+     */
+    private final List<List<Task>> _wheel = new ArrayList<>(WHEEL_SIZE);
+
+    /**
+     * Due polls waiting for the rate limit, only accessed by the event loop thread.
+     */
+    private final Queue<Task> _ready = new ArrayDeque<>();
+
+    /**
+     * Polls that can be started per tick, and polls that can be started now.
+     */
+    private final double _tokensPerTick;
+    private final double _maxTokens;
+    private double _tokens;
+
+    /**
+     * Tick the wheel has reached, and the time of its start.
+     */
+    private long _tick;
+    private long _startTime;
+
+    private SDCPEventLoop.Timeout _ticker;
+
+    private int _staggered;
+
+    private final long _staggerWindow;
+
+    /**
+     * @param eventLoop turning the wheel
+     * @param maxPollRate count of polls started per second, at least 1
+     */
+    public PollScheduler(SDCPEventLoop eventLoop, int maxPollRate) {
+        this(eventLoop, maxPollRate, DEFAULT_STAGGER_WINDOW);
+    }
+
+    /**
+     * @param eventLoop turning the wheel
+     * @param maxPollRate count of polls started per second, at least 1
+     * @param staggerWindow over which the first polls are spread, in milliseconds
+     */
+    public PollScheduler(SDCPEventLoop eventLoop, int maxPollRate, long staggerWindow) {
+        _eventLoop = eventLoop;
+        _staggerWindow = Math.max(0, staggerWindow);
+        _tokensPerTick = Math.max(1, maxPollRate) * TICK / 1000.0;
+        _maxTokens = Math.max(1, _tokensPerTick);
+        _tokens = _maxTokens;
+        for (int i = 0; i < WHEEL_SIZE; i++) {
+            _wheel.add(new ArrayList<>());
+        }
+    }
+
+    /**
+     * Starts turning the wheel.
+     */
+    public void start() {
+        _eventLoop.execute(() -> {
+            if (null == _ticker) {
+                _startTime = System.nanoTime();
+                _tick = 0;
+                _ticker = _eventLoop.schedule(this::tick, TICK);
+            }
+        });
+    }
+
+    /**
+     * Stops turning the wheel and forgets every poll. Nothing is left to stop
+     * once the event loop stopped.
+     */
+    public void stop() {
+        try {
+            _eventLoop.execute(() -> {
+                if (null != _ticker) {
+                    _ticker.cancel();
+                    _ticker = null;
+                }
+                for (List<Task> slot : _wheel) {
+                    slot.clear();
+                }
+                _ready.clear();
+            });
+        } catch (RejectedExecutionException e) {
+            // The wheel doesn't turn anymore
+        }
+    }
+
+    /**
+     * Schedules a poll.
+     *
+     * @param poll to be run
+     * @param delay before the poll, in milliseconds
+     * @return the task, that can be cancelled
+     * @throws RejectedExecutionException if the event loop is stopped
+     */
+    public Task schedule(Runnable poll, long delay) {
+        Task task = new Task(poll);
+        long ticks = Math.max(1, (delay + TICK - 1) / TICK);
+        _eventLoop.execute(() -> {
+            long due = _tick + ticks;
+            task._rounds = (ticks - 1) / WHEEL_SIZE;
+            _wheel.get((int) (due % WHEEL_SIZE)).add(task);
+        });
+        return task;
+    }
+
+    /**
+     * @return the delay of the first poll of a new projector, so that first
+     *         polls are evenly spread over the stagger window
+     */
+    public synchronized long stagger() {
+        // Successive multiples of the golden ratio are evenly spread modulo 1
+        double offset = (_staggered++ * 0.6180339887) % 1;
+        return (long) (offset * _staggerWindow);
+    }
+
+    /**
+     * Turns the wheel up to the current time, then starts the due polls that the
+     * rate limit allows.
+     */
+    private void tick() {
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - _startTime) / TICK;
+        while (_tick < elapsed) {
+            _tick++;
+            _tokens = Math.min(_maxTokens, _tokens + _tokensPerTick);
+            Iterator<Task> tasks = _wheel.get((int) (_tick % WHEEL_SIZE)).iterator();
+            while (tasks.hasNext()) {
+                Task task = tasks.next();
+                if (task.isCancelled()) {
+                    tasks.remove();
+                } else if (task._rounds > 0) {
+                    task._rounds--;
+                } else {
+                    tasks.remove();
+                    _ready.add(task);
+                }
+            }
+        }
+
+        Task task;
+        while (_tokens >= 1 && null != (task = _ready.poll())) {
+            if (task._state.compareAndSet(Task.PENDING, Task.STARTED)) {
+                _tokens--;
+                _executor.execute(task._poll);
+            }
+        }
+        if (!_ready.isEmpty()) {
+            logger.trace("tick: {} polls delayed by the rate limit", _ready.size());
+        }
+
+        long next = _startTime + TimeUnit.MILLISECONDS.toNanos((_tick + 1) * TICK) - System.nanoTime();
+        _ticker = _eventLoop.schedule(this::tick, Math.max(0, TimeUnit.NANOSECONDS.toMillis(next)));
+    }
+}
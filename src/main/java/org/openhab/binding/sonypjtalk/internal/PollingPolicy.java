@@ -0,0 +1,500 @@
+/**
+ * Copyright (c) 2010-2018 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.sonypjtalk.internal;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * This class decides when every item of a projector has to be polled.
+ *
+ * The power status is polled quickly while the projector is starting or
+ * cooling, normally while it is on, and slowly in standby. Once the
+ * {@link PowerTransitionTracker} knows how long a warm-up or a cool-down
+ * lasts, the power status is polled normally during the transition, then
+ * in a burst of fast polls around its predicted end. Other items are
+ * only polled while they are linked. The lamp timer only changes while the
+ * lamp is on, the model name is polled once, and settings are only polled
+ * while the lamp is on. Items whose value is already known, for example
+ * from the properties of the thing, are revalidated later, by a single
+ * poll for the model name and the ip. A failed poll of an item polled once
+ * is retried with the backoff below, unless the projector refused it.
+ * While the projector is unreachable, only the power status is polled, with
+ * an exponential backoff, randomized so that projectors that became
+ * unreachable together, on a network outage for example, are not all polled
+ * again at the same time. A power status advertised by the projector
+ * postpones the next poll of the power status.
+ *
+ * When the status is advertised, the power status is never polled: it is
+ * only learnt from the advertisements of the projector, that is unreachable
+ * once it stopped advertising itself for a while. Failed polls of the other
+ * items are retried with the same backoff.
+ *
+ * Times are in milliseconds, as given by the caller.
+ *
+ * @author Fabien Philippe - Initial contribution
+ *
+ */
+public class PollingPolicy {
+    /**
+     * Interval of the power status polls while starting or cooling.
+     */
+    static final long TRANSITION_INTERVAL = 1000;
+
+    /**
+     * Interval of the power status polls around the predicted end of a transition,
+     * from {@link #BURST_LEAD} before it to {@link #BURST_TAIL} after it.
+     */
+    static final long BURST_INTERVAL = 250;
+    static final long BURST_LEAD = 2000;
+    static final long BURST_TAIL = 3000;
+
+    /**
+     * Interval of the power status polls while the projector is on.
+     */
+    static final long POWER_ON_INTERVAL = 5000;
+
+    /**
+     * Interval of the power status polls in standby.
+     */
+    static final long STANDBY_INTERVAL = 30000;
+
+    /**
+     * Interval of the lamp timer polls while the lamp is on.
+     */
+    static final long LAMP_ON_INTERVAL = 60000;
+
+    /**
+     * Interval of the lamp timer polls while the lamp is off.
+     */
+    static final long LAMP_OFF_INTERVAL = 600000;
+
+    /**
+     * Interval of the settings polls while the lamp is on. They are polled as
+     * soon as the lamp is switched on.
+     */
+    static final long SETTINGS_INTERVAL = 10000;
+
+    /**
+     * Delay a value stays fresh after its next poll is due, as polls may be
+     * delayed by the scheduler and take a while to be answered.
+     */
+    static final long FRESHNESS_SLACK = 2000;
+
+    /**
+     * Next poll time of the items not polled until the lamp is switched on.
+     */
+    private static final long LAMP_ON = Long.MAX_VALUE;
+
+    /**
+     * First and last delays of the backoff while the projector is unreachable.
+     */
+    static final long MIN_BACKOFF = 5000;
+    static final long MAX_BACKOFF = 300000;
+
+    /**
+     * Part of the backoff delay that is randomized.
+     */
+    private static final double BACKOFF_JITTER = 0.2;
+
+    /**
+     * When the status is advertised, delay after the last advertisement at which
+     * the projector is unreachable. Projectors advertise themselves every 30 seconds
+     * by default.
+     */
+    public static final long ADVERTISEMENT_TIMEOUT = 90000;
+
+    /**
+     * Next poll time, keyed by item. A missing item is never polled again.
+     */
+    private final Map<SDCPItem<?>, Long> _nextPolls = new LinkedHashMap<>();
+
+    /**
+     * Items polled once, that are never polled again.
+     */
+    private final Set<SDCPItem<?>> _polledOnce = new HashSet<>();
+
+    /**
+     * Backoff of the items polled once whose last poll failed, keyed by item.
+     */
+    private final Map<SDCPItem<?>, Long> _onceBackoffs = new HashMap<>();
+
+    private PowerStatus _powerStatus;
+
+    private final PowerTransitionTracker _tracker;
+
+    private long _backoff;
+
+    private final boolean _advertisedStatus;
+
+    /**
+     * Time of the last advertisement, or of the start until the first one.
+     */
+    private long _lastAdvertisement;
+
+    /**
+     * Only the power status is polled at the start, other items have to be linked.
+     *
+     * @param now current time
+     */
+    public PollingPolicy(long now) {
+        this(now, false);
+    }
+
+    /**
+     * Only the power status is polled at the start, other items have to be linked.
+     *
+     * @param now current time
+     * @param advertisedStatus true if the power status is only learnt from the
+     *            advertisements of the projector
+     */
+    public PollingPolicy(long now, boolean advertisedStatus) {
+        this(now, advertisedStatus, new PowerTransitionTracker());
+    }
+
+    /**
+     * Only the power status is polled at the start, other items have to be linked.
+     *
+     * @param now current time
+     * @param advertisedStatus true if the power status is only learnt from the
+     *            advertisements of the projector
+     * @param tracker of the power cycle of the projector, that may have learnt the
+     *            durations of its transitions before
+     */
+    public PollingPolicy(long now, boolean advertisedStatus, PowerTransitionTracker tracker) {
+        _advertisedStatus = advertisedStatus;
+        _tracker = tracker;
+        _lastAdvertisement = now;
+        if (!advertisedStatus) {
+            _nextPolls.put(SDCPItem.POWER_STATUS, now);
+        }
+    }
+
+    /**
+     * Starts polling an item, as it is shown by a linked channel. The power status
+     * is always polled, unless it is advertised.
+     *
+     * @param item to be polled
+     * @param now current time
+     */
+    public synchronized void link(SDCPItem<?> item, long now) {
+        if (SDCPItem.POWER_STATUS == item || !item.isReadable() || _polledOnce.contains(item)
+                || _nextPolls.containsKey(item)) {
+            return;
+        }
+        _nextPolls.put(item, now);
+    }
+
+    /**
+     * Postpones the poll of an item whose value is already known, or polls once
+     * an item that is not shown by any channel, so that it is revalidated without
+     * a burst of polls at the start.
+     *
+     * @param item to be revalidated
+     * @param time of the poll
+     */
+    public synchronized void revalidate(SDCPItem<?> item, long time) {
+        if (SDCPItem.POWER_STATUS == item || !item.isReadable() || _polledOnce.contains(item)) {
+            return;
+        }
+        Long nextPoll = _nextPolls.get(item);
+        _nextPolls.put(item, null == nextPoll ? time : Math.max(nextPoll, time));
+    }
+
+    /**
+     * Stops polling an item, as no linked channel shows it anymore.
+     *
+     * @param item not to be polled anymore
+     */
+    public synchronized void unlink(SDCPItem<?> item) {
+        if (SDCPItem.POWER_STATUS != item) {
+            _nextPolls.remove(item);
+            _onceBackoffs.remove(item);
+        }
+    }
+
+    /**
+     * @param now current time
+     * @return the items to be polled now, possibly none. While the projector is
+     *         unreachable, only the power status is returned, or nothing when the
+     *         status is advertised.
+     */
+    public synchronized Set<SDCPItem<?>> dueItems(long now) {
+        Set<SDCPItem<?>> items = new HashSet<>();
+        if (_advertisedStatus) {
+            if (!isUnreachable(now)) {
+                addDueItems(items, now);
+            }
+            return items;
+        }
+
+        if (_backoff > 0) {
+            items.add(SDCPItem.POWER_STATUS);
+            return items;
+        }
+
+        addDueItems(items, now);
+
+        // The power status decides of the next polls
+        if (!items.isEmpty()) {
+            items.add(SDCPItem.POWER_STATUS);
+        }
+        return items;
+    }
+
+    /**
+     * Schedules the next polls depending on the result of a poll.
+     *
+     * @param items that have been polled
+     * @param status result of the poll, null if the projector could not be reached
+     * @param now current time
+     */
+    public synchronized void polled(Set<SDCPItem<?>> items, ProjectorStatus status, long now) {
+        if (_advertisedStatus) {
+            if (null == status) {
+                _backoff = 0 == _backoff ? MIN_BACKOFF : Math.min(2 * _backoff, MAX_BACKOFF);
+                for (SDCPItem<?> item : items) {
+                    _nextPolls.put(item, now + jittered(_backoff));
+                }
+            } else {
+                _backoff = 0;
+                scheduleItems(items, status, now);
+            }
+            return;
+        }
+
+        if (null == status || null == status.getPowerStatus()) {
+            _backoff = 0 == _backoff ? MIN_BACKOFF : Math.min(2 * _backoff, MAX_BACKOFF);
+            _nextPolls.put(SDCPItem.POWER_STATUS, now + jittered(_backoff));
+            return;
+        }
+
+        _backoff = 0;
+        updatePowerStatus(status.getPowerStatus(), now);
+        _nextPolls.put(SDCPItem.POWER_STATUS, now + powerStatusDelay(now));
+        scheduleItems(items, status, now);
+    }
+
+    /**
+     * Postpones the next poll of the power status, as it has been advertised by
+     * the projector. While the projector is unreachable, the advertisement is
+     * ignored: only a poll tells whether commands can be sent. When the status
+     * is advertised, the advertisement is never ignored.
+     *
+     * @param powerStatus advertised
+     * @param now current time
+     * @return false if the advertisement has been ignored
+     */
+    public synchronized boolean advertised(PowerStatus powerStatus, long now) {
+        if (_advertisedStatus) {
+            updatePowerStatus(powerStatus, now);
+            _lastAdvertisement = now;
+            return true;
+        }
+
+        if (_backoff > 0) {
+            return false;
+        }
+
+        updatePowerStatus(powerStatus, now);
+        _nextPolls.put(SDCPItem.POWER_STATUS, now + powerStatusDelay(now));
+        return true;
+    }
+
+    /**
+     * Records a power command acknowledged by the projector, and polls the power
+     * status soon to see the transition start.
+     *
+     * @param on true if the projector has been powered on
+     * @param now current time
+     */
+    public synchronized void powerCommanded(boolean on, long now) {
+        _tracker.commanded(on, now);
+        Long nextPoll = _nextPolls.get(SDCPItem.POWER_STATUS);
+        if (null != nextPoll && 0 == _backoff) {
+            _nextPolls.put(SDCPItem.POWER_STATUS, Math.min(nextPoll, now + TRANSITION_INTERVAL));
+        }
+    }
+
+    /**
+     * @param now current time
+     * @return delay before the next poll
+     */
+    public synchronized long nextPollDelay(long now) {
+        long next = Long.MAX_VALUE;
+        if (_advertisedStatus) {
+            // Either the projector becomes unreachable, or the items are polled
+            if (isUnreachable(now)) {
+                next = now + ADVERTISEMENT_TIMEOUT;
+            } else {
+                next = _lastAdvertisement + ADVERTISEMENT_TIMEOUT;
+                for (Long nextPoll : _nextPolls.values()) {
+                    next = Math.min(next, nextPoll);
+                }
+            }
+        } else if (_backoff > 0) {
+            next = _nextPolls.get(SDCPItem.POWER_STATUS);
+        } else {
+            for (Long nextPoll : _nextPolls.values()) {
+                next = Math.min(next, nextPoll);
+            }
+        }
+        return Math.max(0, next - now);
+    }
+
+    /**
+     * @param item just polled
+     * @param now current time
+     * @return delay the value of the item stays fresh: until its next poll, plus
+     *         {@link #FRESHNESS_SLACK}. {@link Long#MAX_VALUE} if it won't be polled
+     *         again, or not until the lamp is switched on. null if it is not polled.
+     */
+    public synchronized Long getTtl(SDCPItem<?> item, long now) {
+        if (_polledOnce.contains(item)) {
+            return Long.MAX_VALUE;
+        }
+        Long nextPoll = _nextPolls.get(item);
+        if (null == nextPoll) {
+            return null;
+        }
+        return LAMP_ON == nextPoll ? Long.MAX_VALUE : Math.max(0, nextPoll - now) + FRESHNESS_SLACK;
+    }
+
+    /**
+     * @return last power status polled, null if none has been polled yet
+     */
+    public synchronized PowerStatus getPowerStatus() {
+        return _powerStatus;
+    }
+
+    /**
+     * @param now current time
+     * @return true if the projector could not be reached by the last poll, or when
+     *         the status is advertised, if it stopped advertising itself
+     */
+    public synchronized boolean isUnreachable(long now) {
+        if (_advertisedStatus) {
+            return now - _lastAdvertisement >= ADVERTISEMENT_TIMEOUT;
+        }
+        return _backoff > 0;
+    }
+
+    /**
+     * @return true if the power status is only learnt from the advertisements
+     */
+    public boolean isAdvertisedStatus() {
+        return _advertisedStatus;
+    }
+
+    private static long jittered(long backoff) {
+        return (long) (backoff * (1 + BACKOFF_JITTER * (2 * ThreadLocalRandom.current().nextDouble() - 1)));
+    }
+
+    private void addDueItems(Set<SDCPItem<?>> items, long now) {
+        for (Map.Entry<SDCPItem<?>, Long> nextPoll : _nextPolls.entrySet()) {
+            if (nextPoll.getValue() <= now) {
+                items.add(nextPoll.getKey());
+            }
+        }
+    }
+
+    private void scheduleItems(Set<SDCPItem<?>> items, ProjectorStatus status, long now) {
+        for (SDCPItem<?> item : items) {
+            if (SDCPItem.POWER_STATUS == item || !_nextPolls.containsKey(item)) {
+                // Unlinked while it was polled
+                continue;
+            } else if (SDCPItem.MODEL_NAME == item || SDCPItem.IP == item) {
+                if (status.contains(item)) {
+                    _nextPolls.remove(item);
+                    _onceBackoffs.remove(item);
+                    _polledOnce.add(item);
+                } else if (status.isRefused(item)) {
+                    // The projector doesn't know it, asking again won't help
+                    _nextPolls.remove(item);
+                    _onceBackoffs.remove(item);
+                    _polledOnce.add(item);
+                } else {
+                    // Otherwise it would stay due, and be polled again at once
+                    Long backoff = _onceBackoffs.get(item);
+                    backoff = null == backoff ? MIN_BACKOFF : Math.min(2 * backoff, MAX_BACKOFF);
+                    _onceBackoffs.put(item, backoff);
+                    _nextPolls.put(item, now + jittered(backoff));
+                }
+            } else if (SDCPItem.LAMP_TIMER == item) {
+                _nextPolls.put(item, now + (isLampOn(_powerStatus) ? LAMP_ON_INTERVAL : LAMP_OFF_INTERVAL));
+            } else {
+                _nextPolls.put(item, isLampOn(_powerStatus) ? now + SETTINGS_INTERVAL : LAMP_ON);
+            }
+        }
+    }
+
+    /**
+     * Polls the settings as soon as the lamp is switched on.
+     */
+    private void updatePowerStatus(PowerStatus powerStatus, long now) {
+        _tracker.update(powerStatus, now);
+        boolean lampSwitchedOn = !isLampOn(_powerStatus) && isLampOn(powerStatus);
+        _powerStatus = powerStatus;
+        if (lampSwitchedOn) {
+            for (Map.Entry<SDCPItem<?>, Long> nextPoll : _nextPolls.entrySet()) {
+                if (LAMP_ON == nextPoll.getValue()) {
+                    nextPoll.setValue(now);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return delay before the next poll of the power status
+     */
+    private long powerStatusDelay(long now) {
+        switch (_powerStatus) {
+            case STANDBY:
+            case SAVING_STANDBY:
+                return STANDBY_INTERVAL;
+            case POWER_ON:
+            case UNKNOWN:
+                return POWER_ON_INTERVAL;
+            default:
+                Long end = _tracker.getPredictedEnd();
+                if (null == end || now - end > BURST_TAIL) {
+                    // Unknown duration, or longer than predicted
+                    return TRANSITION_INTERVAL;
+                } else if (end - now > BURST_LEAD) {
+                    return Math.min(POWER_ON_INTERVAL, end - BURST_LEAD - now);
+                }
+                return BURST_INTERVAL;
+        }
+    }
+
+    /**
+     * @param powerStatus last power status polled, null if none has been polled yet
+     * @return true if the lamp is on, warming up or cooling down, as the lamp timer
+     *         counts and the settings can be read during the transitions. An unknown
+     *         power status counts as off, so that items are polled at the slow rate
+     *         until the power status is known.
+     */
+    private static boolean isLampOn(PowerStatus powerStatus) {
+        if (null == powerStatus) {
+            return false;
+        }
+        switch (powerStatus.getPhase()) {
+            case WARMING_UP:
+            case ON:
+            case COOLING_DOWN:
+                return true;
+            default:
+                return false;
+        }
+    }
+}
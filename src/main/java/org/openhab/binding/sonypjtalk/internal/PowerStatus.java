@@ -0,0 +1,92 @@
+/**
+ * Copyright (c) 2010-2018 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.sonypjtalk.internal;
+
+/**
+ * Power status of a projector, as returned by item 0x0102.
+ *
+ * @author Fabien Philippe - Initial contribution
+ *
+ */
+public enum PowerStatus {
+    STANDBY(0, "standby", Phase.STANDBY),
+    STARTUP(1, "startup", Phase.WARMING_UP),
+    STARTUP_LAMP(2, "startup lamp", Phase.WARMING_UP),
+    POWER_ON(3, "power on", Phase.ON),
+    COOLING_1(4, "cooling 1", Phase.COOLING_DOWN),
+    COOLING_2(5, "cooling 2", Phase.COOLING_DOWN),
+    SAVING_COOLING_1(6, "saving cooling 1", Phase.COOLING_DOWN),
+    SAVING_COOLING_2(7, "saving cooling 2", Phase.COOLING_DOWN),
+    SAVING_STANDBY(8, "saving standby", Phase.STANDBY),
+    UNKNOWN(-1, "unknown", Phase.UNKNOWN);
+
+    /**
+     * Phase of the power cycle of a projector, grouping the power statuses.
+     */
+    public enum Phase {
+        STANDBY,
+        WARMING_UP,
+        ON,
+        COOLING_DOWN,
+        UNKNOWN;
+
+        /**
+         * @return true if the projector is warming up or cooling down
+         */
+        public boolean isTransition() {
+            return WARMING_UP == this || COOLING_DOWN == this;
+        }
+    }
+
+    private final int _code;
+    private final String _label;
+    private final Phase _phase;
+
+    private PowerStatus(int code, String label, Phase phase) {
+        _code = code;
+        _label = label;
+        _phase = phase;
+    }
+
+    /**
+     * @param code sent by the projector
+     * @return the power status, UNKNOWN if the code is not known
+     */
+    public static PowerStatus fromCode(int code) {
+        for (PowerStatus powerStatus : values()) {
+            if (powerStatus._code == code) {
+                return powerStatus;
+            }
+        }
+        return UNKNOWN;
+    }
+
+    /**
+     * @return the code sent by the projector
+     */
+    public int getCode() {
+        return _code;
+    }
+
+    /**
+     * @return the phase of the power cycle
+     */
+    public Phase getPhase() {
+        return _phase;
+    }
+
+    /**
+     * @return standby, startup, startup lamp, power on, cooling 1, cooling 2,
+     *         saving cooling 1, saving cooling 2, saving standby or unknown.
+     */
+    @Override
+    public String toString() {
+        return _label;
+    }
+}
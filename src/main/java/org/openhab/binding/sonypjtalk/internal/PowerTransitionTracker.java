@@ -0,0 +1,175 @@
+/**
+ * Copyright (c) 2010-2018 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.sonypjtalk.internal;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+import org.openhab.binding.sonypjtalk.internal.PowerStatus.Phase;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class follows the power cycle of a projector, learns how long it
+ * takes to warm up and to cool down, and predicts when the current warm-up
+ * or cool-down ends.
+ *
+ * The start of a transition is the time of the power command that caused
+ * it, or the middle between the last power status seen before it and the
+ * first one seen during it. A duration is only learnt when this start is
+ * known within {@link #MAX_START_UNCERTAINTY}: a transition first seen by a
+ * standby poll could have started half a minute earlier. Durations are
+ * averaged over the last transitions, so that an ageing lamp is followed.
+ *
+ * The time spent in every power status is also averaged, for diagnosis.
+ *
+ * Times are in milliseconds, as given by the caller.
+ *
+ * @author Fabien Philippe - Initial contribution
+ *
+ */
+public class PowerTransitionTracker {
+    private final Logger logger = LoggerFactory.getLogger(PowerTransitionTracker.class);
+
+    /**
+     * Uncertainty on the start of a transition above which its duration is not learnt.
+     */
+    static final long MAX_START_UNCERTAINTY = 2000;
+
+    /**
+     * Delay after a power command during which a transition is attributed to it.
+     */
+    static final long COMMAND_WINDOW = 10000;
+
+    /**
+     * Weight of the last duration in the averages.
+     */
+    private static final double SMOOTHING = 0.3;
+
+    /**
+     * Average duration of the transitions, and of the power statuses.
+     */
+    private final Map<Phase, Long> _transitionDurations = new EnumMap<>(Phase.class);
+    private final Map<PowerStatus, Long> _statusDurations = new EnumMap<>(PowerStatus.class);
+
+    private PowerStatus _powerStatus;
+    private long _statusStart;
+
+    /**
+     * Current phase, its start, and whether its start is known precisely.
+     */
+    private Phase _phase = Phase.UNKNOWN;
+    private long _phaseStart;
+    private boolean _preciseStart;
+
+    /**
+     * Time of the last power status seen.
+     */
+    private long _lastSeen;
+
+    /**
+     * Last power command, and the phase it causes.
+     */
+    private Phase _commandedPhase;
+    private long _commandTime;
+
+    /**
+     * Records a power command, starting a warm-up or a cool-down once the
+     * projector reports it.
+     *
+     * @param on true if the projector has been powered on
+     * @param now current time
+     */
+    public synchronized void commanded(boolean on, long now) {
+        _commandedPhase = on ? Phase.WARMING_UP : Phase.COOLING_DOWN;
+        _commandTime = now;
+    }
+
+    /**
+     * Follows the power status seen on the projector.
+     *
+     * @param powerStatus polled or advertised
+     * @param now current time
+     * @return true if the phase changed
+     */
+    public synchronized boolean update(PowerStatus powerStatus, long now) {
+        if (powerStatus != _powerStatus) {
+            if (null != _powerStatus && _preciseStart) {
+                _statusDurations.put(_powerStatus, average(_statusDurations.get(_powerStatus), now - _statusStart));
+            }
+            _powerStatus = powerStatus;
+            _statusStart = now;
+        }
+
+        Phase phase = powerStatus.getPhase();
+        if (phase == _phase) {
+            _lastSeen = now;
+            return false;
+        }
+
+        if (_phase.isTransition() && _preciseStart && Phase.UNKNOWN != phase) {
+            long duration = now - _phaseStart;
+            Long average = average(_transitionDurations.get(_phase), duration);
+            _transitionDurations.put(_phase, average);
+            logger.debug("update: {} took {} ms, {} ms on average", _phase, duration, average);
+        }
+
+        if (phase == _commandedPhase && now - _commandTime <= COMMAND_WINDOW) {
+            _phaseStart = _commandTime;
+            _preciseStart = true;
+        } else {
+            _phaseStart = Phase.UNKNOWN == _phase ? now : (_lastSeen + now) / 2;
+            _preciseStart = Phase.UNKNOWN != _phase && now - _lastSeen <= MAX_START_UNCERTAINTY;
+        }
+        _statusStart = _phaseStart;
+        _commandedPhase = null;
+        _phase = phase;
+        _lastSeen = now;
+        return true;
+    }
+
+    /**
+     * @return current phase of the power cycle
+     */
+    public synchronized Phase getPhase() {
+        return _phase;
+    }
+
+    /**
+     * @return predicted end of the current warm-up or cool-down, null if the
+     *         projector is not in transition or if its duration is not known yet
+     */
+    public synchronized Long getPredictedEnd() {
+        if (!_phase.isTransition()) {
+            return null;
+        }
+        Long duration = _transitionDurations.get(_phase);
+        return null == duration ? null : _phaseStart + duration;
+    }
+
+    /**
+     * @param phase {@link Phase#WARMING_UP} or {@link Phase#COOLING_DOWN}
+     * @return average duration of the transition, null if it is not known yet
+     */
+    public synchronized Long getTransitionDuration(Phase phase) {
+        return _transitionDurations.get(phase);
+    }
+
+    /**
+     * @param powerStatus of the projector
+     * @return average time spent in the power status, null if it is not known yet
+     */
+    public synchronized Long getStatusDuration(PowerStatus powerStatus) {
+        return _statusDurations.get(powerStatus);
+    }
+
+    private static Long average(Long average, long duration) {
+        return null == average ? duration : Math.round(SMOOTHING * duration + (1 - SMOOTHING) * average);
+    }
+}
@@ -9,7 +9,20 @@
 package org.openhab.binding.sonypjtalk.internal;
 
 import java.net.InetAddress;
-import java.net.UnknownHostException;
+import java.nio.channels.ClosedChannelException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -18,16 +31,41 @@ import org.slf4j.LoggerFactory;
  * This class allow to communicate with a video projector using
  * PJTalk - SDCP protocols from Sony.
  *
+ * The asynchronous methods never block: their futures are completed on the
+ * {@link BindingExecutor}, by the deadline given to every call. They fail with:
+ * <ul>
+ * <li>{@link java.util.concurrent.TimeoutException} when the deadline elapsed,</li>
+ * <li>{@link java.net.SocketTimeoutException} when the projector didn't answer,</li>
+ * <li>{@link java.net.ConnectException} when the projector is unreachable,</li>
+ * <li>{@link SDCPRefusedException} when the projector refused the request,</li>
+ * <li>{@link java.util.concurrent.CancellationException} when a command has been superseded,</li>
+ * <li>{@link java.util.concurrent.RejectedExecutionException} when too many requests are pending,</li>
+ * <li>{@link java.nio.channels.ClosedChannelException} when the connection has been closed.</li>
+ * </ul>
+ * The blocking methods wait for these futures and return null on failure.
+ *
  * @author Fabien Philippe - Initial contribution
  *
  */
 public class ProjectorConnection {
     private final Logger logger = LoggerFactory.getLogger(ProjectorConnection.class);
 
+    /**
+     * Deadline of the calls of the blocking methods, in milliseconds.
+     */
+    public static final long DEFAULT_TIMEOUT = SDCPSocket.BLOCKING_TIMEOUT;
+
+    /**
+     * Registry owning the socket.
+     */
+    private final SDCPSocketRegistry _registry;
+
     /**
      * SDCP client socket used to communicate with the projector.
+     * It is owned by the {@link SDCPSocketRegistry} and shared with
+     * every other connection to the same device.
      */
-    private SDCPSocket _socket;
+    private volatile SDCPSocket _socket;
 
     /**
      *
@@ -35,36 +73,236 @@ public class ProjectorConnection {
      * @param community used to communicate on the network
      */
     public ProjectorConnection(String hostName, String community) {
-        _socket = new SDCPSocket(hostName, community);
+        this(hostName, SDCPSocket.DEFAULT_PORT, community);
+    }
+
+    /**
+     *
+     * @param hostName of the device
+     * @param port TCP port of the device
+     * @param community used to communicate on the network
+     */
+    public ProjectorConnection(String hostName, int port, String community) {
+        this(SDCPSocketRegistry.getDefault(), hostName, port, community);
+    }
+
+    /**
+     *
+     * @param registry owning the socket of the device
+     * @param hostName of the device
+     * @param port TCP port of the device
+     * @param community used to communicate on the network
+     */
+    public ProjectorConnection(SDCPSocketRegistry registry, String hostName, int port, String community) {
+        _registry = registry;
+        _socket = registry.acquire(hostName, port, community);
     }
 
     /**
      * This has to be called to free resources.
      */
-    public void close() {
+    public synchronized void close() {
+        if (null == _socket) {
+            return;
+        }
+
         try {
-            _socket.close();
+            _registry.release(_socket);
         } catch (Exception ex) {
         }
+        _socket = null;
     }
 
     /**
-     * Depending on the powerStatus value, attempts to power on or off
-     * the projector.
+     * @return metrics of the communication with the projector, null once the
+     *         connection is closed
+     */
+    public SDCPMetrics getMetrics() {
+        SDCPSocket socket = _socket;
+        return null == socket ? null : socket.getMetrics();
+    }
+
+    /**
+     * Sets the count of requests sent to the projector without waiting for
+     * the responses, when several items are read by {@link #getStatus(Set)}.
+     * Ignored once the connection is closed.
+     *
+     * @param pipelineDepth at least 1
+     */
+    public synchronized void setPipelineDepth(int pipelineDepth) {
+        SDCPSocket socket = _socket;
+        if (null != socket) {
+            socket.setPipelineDepth(pipelineDepth);
+        }
+    }
+
+    /**
+     * Sets the delay after which the connection to the projector is closed when
+     * it is not used, so that other controllers can connect to it. Ignored once
+     * the connection is closed.
+     *
+     * @param idleTimeout in milliseconds, 0 to keep the connection open
+     */
+    public synchronized void setIdleTimeout(long idleTimeout) {
+        SDCPSocket socket = _socket;
+        if (null != socket) {
+            socket.setIdleTimeout(idleTimeout);
+        }
+    }
+
+    /**
+     * Sets how long the connection to the projector is held, so that other
+     * controllers can connect to it. Ignored once the connection is closed.
+     *
+     * @param policy of the connection
+     */
+    public synchronized void setConnectionPolicy(ConnectionPolicy policy) {
+        SDCPSocket socket = _socket;
+        if (null != socket) {
+            socket.setConnectionPolicy(policy);
+        }
+    }
+
+    /**
+     * Powers on or off the projector. The command is sent before any pending
+     * poll, and supersedes a power command not sent yet.
      *
      * @param powerStatus must be true to power on the projector.
+     * @param timeout deadline of the command, in milliseconds
+     * @return a future completed when the projector acknowledged the command
      */
-    public synchronized void setPowerStatus(boolean powerStatus) {
-        try {
-            _socket.open();
+    public CompletableFuture<Void> setPowerStatusAsync(boolean powerStatus, long timeout) {
+        SDCPItem<Void> item = powerStatus ? SDCPItem.POWER_ON : SDCPItem.POWER_OFF;
+        return setAsync(item, null, SDCPItem.POWER_ON.getNumber(), timeout);
+    }
 
-            if (powerStatus) {
-                _socket.sendSetCommand(0x172e, new byte[] {});
-            } else {
-                _socket.sendSetCommand(0x172f, new byte[] {});
-            }
-        } catch (Exception e) {
+    /**
+     * Writes an item of the projector. The command is sent before any pending
+     * poll, and supersedes a command of the same item not sent yet.
+     *
+     * @param item to be written
+     * @param value to be written
+     * @param timeout deadline of the command, in milliseconds
+     * @return a future completed when the projector acknowledged the command
+     */
+    public <T> CompletableFuture<Void> setAsync(SDCPItem<T> item, T value, long timeout) {
+        return setAsync(item, value, item.getNumber(), timeout);
+    }
+
+    private <T> CompletableFuture<Void> setAsync(SDCPItem<T> item, T value, int coalescingKey, long timeout) {
+        SDCPSocket socket = _socket;
+        if (null == socket) {
+            return closed();
+        }
+        return withDeadline(socket,
+                socket.sendSetCommandAsync(item, value, coalescingKey, timeout).thenApply(data -> null), item, timeout);
+    }
+
+    /**
+     * Reads an item of the projector.
+     *
+     * @param item to be read
+     * @param timeout deadline of the request, in milliseconds
+     * @return a future completed with the value of the item
+     */
+    public <T> CompletableFuture<T> getAsync(SDCPItem<T> item, long timeout) {
+        SDCPSocket socket = _socket;
+        if (null == socket) {
+            return closed();
         }
+        return withDeadline(socket, socket.sendGetCommandAsync(item, timeout), item, timeout);
+    }
+
+    /**
+     * Reads the power status of the projector.
+     *
+     * @param timeout deadline of the request, in milliseconds
+     * @return a future completed with the power status
+     */
+    public CompletableFuture<PowerStatus> getPowerStatusAsync(long timeout) {
+        return getAsync(SDCPItem.POWER_STATUS, timeout);
+    }
+
+    /**
+     * Reads several items of the projector at once. Requests are sent together,
+     * as far as the projector allows.
+     *
+     * @param items to be read
+     * @param timeout deadline of the requests, in milliseconds
+     * @return a future completed with a snapshot holding the items that have been
+     *         read. It fails with the failure of the first item if none could be read.
+     */
+    public CompletableFuture<ProjectorStatus> getStatusAsync(Set<SDCPItem<?>> items, long timeout) {
+        Map<SDCPItem<?>, CompletableFuture<?>> futures = new LinkedHashMap<>();
+        for (SDCPItem<?> item : items) {
+            futures.put(item, getAsync(item, timeout));
+        }
+
+        return CompletableFuture.allOf(futures.values().toArray(new CompletableFuture<?>[futures.size()]))
+                .handle((nothing, exception) -> {
+                    Map<SDCPItem<?>, Object> values = new HashMap<>();
+                    Set<SDCPItem<?>> refused = new HashSet<>();
+                    Throwable failure = null;
+                    for (Map.Entry<SDCPItem<?>, CompletableFuture<?>> future : futures.entrySet()) {
+                        try {
+                            Object value = future.getValue().join();
+                            if (null != value) {
+                                values.put(future.getKey(), value);
+                            }
+                        } catch (CompletionException | CancellationException e) {
+                            Throwable cause = unwrap(e);
+                            logger.debug("getStatus: item {} failed. Exception is {}", future.getKey(),
+                                    cause.toString());
+                            failure = null == failure ? cause : failure;
+                            if (cause instanceof SDCPRefusedException) {
+                                refused.add(future.getKey());
+                            }
+                        }
+                    }
+
+                    if (values.isEmpty() && null != failure) {
+                        throw new CompletionException(failure);
+                    }
+                    return new ProjectorStatus(values, refused);
+                });
+    }
+
+    /**
+     * Depending on the powerStatus value, attempts to power on or off
+     * the projector. The command is sent before any pending poll, and
+     * supersedes a power command not sent yet.
+     *
+     * @param powerStatus must be true to power on the projector.
+     */
+    public void setPowerStatus(boolean powerStatus) {
+        await("setPowerStatus", setPowerStatusAsync(powerStatus, DEFAULT_TIMEOUT));
+    }
+
+    /**
+     * Attempts to write an item of the projector. The command is sent before
+     * any pending poll, and supersedes a command of the same item not sent yet.
+     *
+     * @param item to be written
+     * @param value to be written
+     * @return true if the projector acknowledged the command
+     */
+    public <T> boolean setItem(SDCPItem<T> item, T value) {
+        CompletableFuture<Void> future = setAsync(item, value, DEFAULT_TIMEOUT);
+        await("setItem", future);
+        return future.isDone() && !future.isCompletedExceptionally();
+    }
+
+    /**
+     * Attempts to read several items of the projector at once. Requests are
+     * sent together, as far as the projector allows.
+     *
+     * @param items to be read
+     * @return a snapshot holding the items that have been read, or null if
+     *         communication failed.
+     */
+    public ProjectorStatus getStatus(Set<SDCPItem<?>> items) {
+        ProjectorStatus status = await("getStatus", getStatusAsync(items, DEFAULT_TIMEOUT));
+        return null == status || status.getItems().isEmpty() ? null : status;
     }
 
     /**
@@ -75,40 +313,9 @@ public class ProjectorConnection {
      *         saving standby or unknown. null is returned if communication
      *         failed.
      */
-    public synchronized String getPowerStatus() {
-        try {
-            _socket.open();
-
-            byte[] powerStatus = _socket.sendGetCommand(0x0102, new byte[] {});
-            if (null == powerStatus) {
-                return null;
-            }
-
-            switch (powerStatus[1]) {
-                case 0:
-                    return "standby";
-                case 1:
-                    return "startup";
-                case 2:
-                    return "startup lamp";
-                case 3:
-                    return "power on";
-                case 4:
-                    return "cooling 1";
-                case 5:
-                    return "cooling 2";
-                case 6:
-                    return "saving cooling 1";
-                case 7:
-                    return "saving cooling 2";
-                case 8:
-                    return "saving standby";
-                default:
-                    return "unknown";
-            }
-        } catch (Exception e) {
-            return null;
-        }
+    public String getPowerStatus() {
+        PowerStatus powerStatus = get(SDCPItem.POWER_STATUS);
+        return null == powerStatus ? null : powerStatus.toString();
     }
 
     /**
@@ -116,27 +323,8 @@ public class ProjectorConnection {
      *
      * @return model name of the projector.
      */
-    public synchronized String getModelName() {
-        try {
-            _socket.open();
-
-            byte[] model = _socket.sendGetCommand(0x8001, new byte[] {});
-            if (null == model) {
-                return null;
-            }
-
-            String modelName = "";
-            for (byte octet : model) {
-                if (0 == octet) {
-                    break;
-                }
-                modelName += (char) (octet & 0xFF);
-            }
-
-            return modelName;
-        } catch (Exception e) {
-            return null;
-        }
+    public String getModelName() {
+        return get(SDCPItem.MODEL_NAME);
     }
 
     /**
@@ -144,19 +332,8 @@ public class ProjectorConnection {
      *
      * @return lamp timer in hour or null if communication failed.
      */
-    public synchronized Integer getLampTimer() {
-        try {
-            _socket.open();
-
-            byte[] timer = _socket.sendGetCommand(0x0113, new byte[] {});
-            if (null == timer || timer.length != 2) {
-                return null;
-            }
-
-            return (timer[0] & 0xff) * 256 + (timer[1] & 0xff);
-        } catch (Exception e) {
-            return null;
-        }
+    public Integer getLampTimer() {
+        return get(SDCPItem.LAMP_TIMER);
     }
 
     /**
@@ -164,20 +341,68 @@ public class ProjectorConnection {
      *
      * @return ip of the projector or null if communication failed.
      */
-    public synchronized InetAddress getIp() {
+    public InetAddress getIp() {
+        return get(SDCPItem.IP);
+    }
+
+    private <T> T get(SDCPItem<T> item) {
+        return await("get", getAsync(item, DEFAULT_TIMEOUT));
+    }
+
+    /**
+     * Waits for a future of a blocking method. It ends by its deadline, unless
+     * the event loop is gone.
+     *
+     * @return the result of the future, or null if it failed
+     */
+    private <T> T await(String method, CompletableFuture<T> future) {
         try {
-            _socket.open();
+            return future.get(2 * DEFAULT_TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            logger.debug("{}: failed. Exception is {}", method, e.getCause().toString());
+        } catch (CancellationException | TimeoutException e) {
+            logger.debug("{}: failed. Exception is {}", method, e.toString());
+        }
+        return null;
+    }
 
-            byte[] ip = _socket.sendGetCommand(0x9001, new byte[] {});
-            if (null == ip) {
-                return null;
+    /**
+     * Completes a request on the executor of the binding, or fails it with a
+     * {@link TimeoutException} once its deadline elapsed.
+     */
+    private static <T> CompletableFuture<T> withDeadline(SDCPSocket socket, CompletableFuture<T> request,
+            SDCPItem<?> item, long timeout) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Executor executor = BindingExecutor.get();
+        SDCPEventLoop.Timeout deadline;
+        try {
+            deadline = socket.schedule(() -> executor.execute(() -> result.completeExceptionally(
+                    new TimeoutException("no result for item " + item + " in " + timeout + " ms"))), timeout);
+        } catch (RejectedExecutionException e) {
+            // The event loop stopped, the request failed or is about to
+            return closed();
+        }
+        request.whenCompleteAsync((value, exception) -> {
+            deadline.cancel();
+            if (null == exception) {
+                result.complete(value);
+            } else {
+                result.completeExceptionally(unwrap(exception));
             }
+        }, executor);
+        return result;
+    }
 
-            return InetAddress.getByAddress(ip);
-        } catch (UnknownHostException e) {
-            return null;
-        } catch (Exception e) {
-            return null;
-        }
+    private static <T> CompletableFuture<T> closed() {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        result.completeExceptionally(new ClosedChannelException());
+        return result;
+    }
+
+    private static Throwable unwrap(Throwable exception) {
+        return exception instanceof CompletionException && null != exception.getCause() ? exception.getCause()
+                : exception;
     }
 }
@@ -0,0 +1,104 @@
+/**
+ * Copyright (c) 2010-2018 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.sonypjtalk.internal;
+
+import java.net.InetAddress;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Snapshot of the items of a projector read together by
+ * {@link ProjectorConnection#getStatus(java.util.Set)}.
+ * Items that could not be read are missing, and the ones refused by the
+ * projector are told apart from the ones that failed otherwise.
+ *
+ * @author Fabien Philippe - Initial contribution
+ *
+ */
+public class ProjectorStatus {
+    private final Map<SDCPItem<?>, Object> _values;
+
+    private final Set<SDCPItem<?>> _refused;
+
+    /**
+     * @param values decoded values, keyed by item
+     */
+    ProjectorStatus(Map<SDCPItem<?>, Object> values) {
+        this(values, Collections.emptySet());
+    }
+
+    /**
+     * @param values decoded values, keyed by item
+     * @param refused items answered with an error by the projector
+     */
+    ProjectorStatus(Map<SDCPItem<?>, Object> values, Set<SDCPItem<?>> refused) {
+        _values = values;
+        _refused = refused;
+    }
+
+    /**
+     * @return the items that have been read
+     */
+    public Set<SDCPItem<?>> getItems() {
+        return _values.keySet();
+    }
+
+    /**
+     * @param item of the projector
+     * @return true if the item has been read
+     */
+    public boolean contains(SDCPItem<?> item) {
+        return _values.containsKey(item);
+    }
+
+    /**
+     * @param item of the projector
+     * @return true if the projector answered the request of the item with an error
+     */
+    public boolean isRefused(SDCPItem<?> item) {
+        return _refused.contains(item);
+    }
+
+    /**
+     * @param item of the projector
+     * @return the decoded value of the item, or null if it has not been read
+     */
+    public <T> T get(SDCPItem<T> item) {
+        return item.cast(_values.get(item));
+    }
+
+    /**
+     * @return power status of the projector, or null if it has not been read
+     */
+    public PowerStatus getPowerStatus() {
+        return get(SDCPItem.POWER_STATUS);
+    }
+
+    /**
+     * @return model name of the projector, or null if it has not been read
+     */
+    public String getModelName() {
+        return get(SDCPItem.MODEL_NAME);
+    }
+
+    /**
+     * @return lamp timer in hour, or null if it has not been read
+     */
+    public Integer getLampTimer() {
+        return get(SDCPItem.LAMP_TIMER);
+    }
+
+    /**
+     * @return ip of the projector, or null if it has not been read
+     */
+    public InetAddress getIp() {
+        return get(SDCPItem.IP);
+    }
+}
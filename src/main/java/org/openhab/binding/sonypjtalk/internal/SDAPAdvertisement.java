@@ -0,0 +1,147 @@
+/**
+ * Copyright (c) 2010-2018 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.sonypjtalk.internal;
+
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * An SDAP advertisement, broadcasted periodically by PJTalk devices.
+ *
+ * It is made of a header ("DA"), version, category, community (4 bytes),
+ * product name (12 bytes), serial number (4 bytes), power status (2 bytes)
+ * and location.
+ *
+ * Instances are reused by the {@link SDAPListener} for every packet received,
+ * so they must not be kept by listeners.
+ *
+ * @author Fabien Philippe - Initial contribution
+ *
+ */
+public class SDAPAdvertisement {
+    /**
+     * Minimum length of an advertisement, up to the power status.
+     */
+    static final int MIN_LENGTH = 26;
+
+    private final byte[] _community = new byte[4];
+
+    private final byte[] _productName = new byte[12];
+
+    private int _productNameLength;
+
+    private int _version;
+
+    private int _category;
+
+    private int _serialNumber;
+
+    private int _powerStatus;
+
+    private InetAddress _address;
+
+    /**
+     * Decodes an advertisement.
+     *
+     * @param packet holding the received bytes, in read mode
+     * @param address the packet has been received from
+     * @return false if the packet is not an SDAP advertisement
+     */
+    boolean decode(ByteBuffer packet, InetAddress address) {
+        int start = packet.position();
+        if (packet.remaining() < MIN_LENGTH || 'D' != packet.get(start) || 'A' != packet.get(start + 1)) {
+            return false;
+        }
+
+        _version = packet.get(start + 2) & 0xFF;
+        _category = packet.get(start + 3) & 0xFF;
+        for (int i = 0; i < _community.length; i++) {
+            _community[i] = packet.get(start + 4 + i);
+        }
+        _productNameLength = 0;
+        for (int i = 0; i < _productName.length; i++) {
+            byte octet = packet.get(start + 8 + i);
+            if (0 == octet) {
+                break;
+            }
+            _productName[i] = octet;
+            _productNameLength++;
+        }
+        _serialNumber = packet.getInt(start + 20);
+        _powerStatus = packet.getShort(start + 24) & 0xFFFF;
+        _address = address;
+        return true;
+    }
+
+    /**
+     * @param community used to communicate on the network
+     * @return true if the device belongs to the community
+     */
+    public boolean isCommunity(String community) {
+        if (community.length() != _community.length) {
+            return false;
+        }
+        for (int i = 0; i < _community.length; i++) {
+            if (_community[i] != (byte) community.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return community of the device
+     */
+    public String getCommunity() {
+        return new String(_community, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * @return product name of the device, for example VPL-HW65ES
+     */
+    public String getProductName() {
+        return new String(_productName, 0, _productNameLength, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * @return version of the SDAP protocol
+     */
+    public int getVersion() {
+        return _version;
+    }
+
+    /**
+     * @return category of the device, 0x0A for a projector
+     */
+    public int getCategory() {
+        return _category;
+    }
+
+    /**
+     * @return serial number of the device
+     */
+    public int getSerialNumber() {
+        return _serialNumber;
+    }
+
+    /**
+     * @return power status of the device
+     */
+    public PowerStatus getPowerStatus() {
+        return PowerStatus.fromCode(_powerStatus);
+    }
+
+    /**
+     * @return address the advertisement has been received from
+     */
+    public InetAddress getAddress() {
+        return _address;
+    }
+}
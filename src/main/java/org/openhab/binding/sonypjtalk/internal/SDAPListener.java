@@ -0,0 +1,154 @@
+/**
+ * Copyright (c) 2010-2018 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.sonypjtalk.internal;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class listens passively to the SDAP advertisements broadcasted by
+ * PJTalk devices, on a single datagram channel shared by the whole binding.
+ *
+ * The channel is opened when the first listener is added and closed when the
+ * last one is removed. Packets are decoded in a buffer and an
+ * {@link SDAPAdvertisement} reused by the receiving thread, so listeners are
+ * called on this thread and must not keep the advertisement. Every receiving
+ * thread has its own, and is given the channel it reads when created: the
+ * thread of a closed channel may still be receiving when the channel is
+ * opened again, and stops without touching the new one.
+ *
+ * @author Fabien Philippe - Initial contribution
+ *
+ */
+public class SDAPListener {
+    private static final Logger logger = LoggerFactory.getLogger(SDAPListener.class);
+
+    /**
+     * UDP port of the SDAP advertisements.
+     */
+    public static final int PORT = 53862;
+
+    /**
+     * Receives the advertisements.
+     */
+    public interface Listener {
+        /**
+         * Called on the receiving thread for every advertisement.
+         *
+         * @param advertisement received, only valid during the call
+         */
+        void advertisementReceived(SDAPAdvertisement advertisement);
+    }
+
+    private static final SDAPListener INSTANCE = new SDAPListener();
+
+    private final List<Listener> _listeners = new CopyOnWriteArrayList<>();
+
+    private DatagramChannel _channel;
+
+    private Thread _thread;
+
+    private SDAPListener() {
+    }
+
+    /**
+     * @return the listener shared by the whole binding
+     */
+    public static SDAPListener getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Adds a listener, opening the channel if needed.
+     *
+     * @param listener to be added
+     */
+    public synchronized void addListener(Listener listener) {
+        _listeners.add(listener);
+        if (null != _channel) {
+            return;
+        }
+
+        try {
+            DatagramChannel channel = DatagramChannel.open(StandardProtocolFamily.INET);
+            channel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+            channel.bind(new InetSocketAddress(PORT));
+            _channel = channel;
+            _thread = new Thread(() -> receive(channel), "SDAP-listener");
+            _thread.setDaemon(true);
+            _thread.start();
+            logger.debug("addListener: listening to SDAP advertisements on port {}", PORT);
+        } catch (IOException e) {
+            logger.warn("addListener: unable to listen to SDAP advertisements on port {}. Exception is {}", PORT,
+                    e.toString());
+        }
+    }
+
+    /**
+     * Removes a listener, closing the channel if it was the last one.
+     *
+     * @param listener to be removed
+     */
+    public synchronized void removeListener(Listener listener) {
+        _listeners.remove(listener);
+        if (!_listeners.isEmpty() || null == _channel) {
+            return;
+        }
+
+        try {
+            _channel.close();
+        } catch (IOException e) {
+        }
+        _channel = null;
+        _thread = null;
+    }
+
+    /**
+     * Receives the advertisements until the channel is closed.
+     *
+     * @param channel opened for the receiving thread
+     */
+    private void receive(DatagramChannel channel) {
+        ByteBuffer packet = ByteBuffer.allocateDirect(512);
+        SDAPAdvertisement advertisement = new SDAPAdvertisement();
+        while (channel.isOpen()) {
+            try {
+                packet.clear();
+                InetSocketAddress sender = (InetSocketAddress) channel.receive(packet);
+                packet.flip();
+                if (null == sender || !advertisement.decode(packet, sender.getAddress())) {
+                    continue;
+                }
+
+                for (Listener listener : _listeners) {
+                    try {
+                        listener.advertisementReceived(advertisement);
+                    } catch (Exception e) {
+                        logger.warn("receive: Exception in SDAP listener {}", e.toString());
+                    }
+                }
+            } catch (ClosedChannelException e) {
+                break;
+            } catch (IOException e) {
+                logger.debug("receive: IOException {}", e.toString());
+            }
+        }
+        logger.debug("receive: stopped listening to SDAP advertisements");
+    }
+}
@@ -0,0 +1,329 @@
+/**
+ * Copyright (c) 2010-2018 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.sonypjtalk.internal;
+
+import java.io.IOException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class runs a single thread that multiplexes the TCP channels of
+ * every PJTalk device thru one {@link Selector}. All the I/O and the
+ * timeouts of the {@link SDCPSocket}s registered on it are handled by
+ * this thread, so a slow or unreachable device never holds a caller thread.
+ *
+ * Once the loop is stopped, it rejects new tasks. The tasks submitted before
+ * are still run, then the stop tasks, so that the users of the loop can fail
+ * what they were still waiting for.
+ *
+ * @author Fabien Philippe - Initial contribution
+ *
+ */
+public class SDCPEventLoop implements Runnable {
+    private final Logger logger = LoggerFactory.getLogger(SDCPEventLoop.class);
+
+    /**
+     * Receives the readiness events of a channel registered on the loop.
+     */
+    interface Handler {
+        /**
+         * Called on the event loop thread when the channel is ready.
+         *
+         * @param key selection key of the channel
+         */
+        void handleEvent(SelectionKey key);
+    }
+
+    /**
+     * A task scheduled on the event loop. It can be cancelled from any thread.
+     */
+    public static final class Timeout implements Comparable<Timeout> {
+        private final long _deadline;
+        private final long _sequence;
+        private final Runnable _task;
+        private volatile boolean _cancelled;
+
+        private Timeout(long deadline, long sequence, Runnable task) {
+            _deadline = deadline;
+            _sequence = sequence;
+            _task = task;
+        }
+
+        /**
+         * Prevents the task from being run.
+         */
+        public void cancel() {
+            _cancelled = true;
+        }
+
+        @Override
+        public int compareTo(Timeout other) {
+            if (_deadline != other._deadline) {
+                return _deadline < other._deadline ? -1 : 1;
+            }
+            return Long.compare(_sequence, other._sequence);
+        }
+    }
+
+    private final String _name;
+
+    private final Selector _selector;
+
+    /**
+     * Tasks submitted from any thread, run by the event loop thread.
+     */
+    private final Queue<Runnable> _tasks = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Timeouts, only accessed by the event loop thread.
+     */
+    private final PriorityQueue<Timeout> _timeouts = new PriorityQueue<>();
+
+    private final AtomicLong _timeoutSequence = new AtomicLong();
+
+    private Thread _thread;
+
+    private volatile boolean _running;
+
+    /**
+     * Set once the loop stopped accepting tasks, guarded by {@link #_tasks}.
+     */
+    private boolean _closed;
+
+    /**
+     * Tasks run on the event loop thread when it stops.
+     */
+    private final Set<Runnable> _stopTasks = ConcurrentHashMap.newKeySet();
+
+    /**
+     * @param name of the event loop thread
+     * @throws IOException if the selector can't be opened
+     */
+    public SDCPEventLoop(String name) throws IOException {
+        _name = name;
+        _selector = Selector.open();
+    }
+
+    /**
+     * Starts the event loop thread.
+     */
+    public synchronized void start() {
+        if (null != _thread) {
+            return;
+        }
+
+        _running = true;
+        _thread = new Thread(this, _name);
+        _thread.setDaemon(true);
+        _thread.start();
+    }
+
+    /**
+     * Stops the event loop thread and closes every channel still registered.
+     */
+    public synchronized void stop() {
+        if (null == _thread) {
+            return;
+        }
+
+        _running = false;
+        _selector.wakeup();
+        if (Thread.currentThread() != _thread) {
+            try {
+                _thread.join(TimeUnit.SECONDS.toMillis(2));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        _thread = null;
+    }
+
+    /**
+     * @return true if the caller runs on the event loop thread
+     */
+    public boolean inEventLoop() {
+        return Thread.currentThread() == _thread;
+    }
+
+    /**
+     * Submits a task to be run on the event loop thread.
+     *
+     * @param task to be run
+     * @throws RejectedExecutionException if the loop is stopped
+     */
+    public void execute(Runnable task) {
+        synchronized (_tasks) {
+            if (_closed) {
+                throw new RejectedExecutionException("event loop " + _name + " stopped");
+            }
+            _tasks.add(task);
+        }
+        _selector.wakeup();
+    }
+
+    /**
+     * Registers a task to be run on the event loop thread when the loop stops,
+     * after the tasks submitted before.
+     *
+     * @param task to be run
+     */
+    public void addStopTask(Runnable task) {
+        _stopTasks.add(task);
+    }
+
+    /**
+     * @param task not to be run anymore when the loop stops
+     */
+    public void removeStopTask(Runnable task) {
+        _stopTasks.remove(task);
+    }
+
+    /**
+     * Schedules a task on the event loop thread.
+     *
+     * @param task to be run
+     * @param delay before running the task, in milliseconds
+     * @return the timeout, that can be cancelled
+     * @throws RejectedExecutionException if the loop is stopped
+     */
+    public Timeout schedule(Runnable task, long delay) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay);
+        Timeout timeout = new Timeout(deadline, _timeoutSequence.getAndIncrement(), task);
+        if (inEventLoop()) {
+            _timeouts.add(timeout);
+        } else {
+            execute(() -> _timeouts.add(timeout));
+        }
+        return timeout;
+    }
+
+    /**
+     * Registers a channel on the selector. Must be called on the event loop thread.
+     *
+     * @param channel to be registered
+     * @param interestOps operations to be selected
+     * @param handler receiving the readiness events
+     * @return the selection key of the channel
+     * @throws IOException if the channel can't be registered
+     */
+    SelectionKey register(SelectableChannel channel, int interestOps, Handler handler) throws IOException {
+        return channel.register(_selector, interestOps, handler);
+    }
+
+    @Override
+    public void run() {
+        logger.debug("run: event loop {} started", _name);
+        while (_running) {
+            try {
+                runTasks();
+
+                long delay = nextTimeoutDelay();
+                if (!_tasks.isEmpty() || 0 == delay) {
+                    _selector.selectNow();
+                } else {
+                    _selector.select(delay < 0 ? 0 : delay);
+                }
+
+                Iterator<SelectionKey> keys = _selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (key.isValid()) {
+                        ((Handler) key.attachment()).handleEvent(key);
+                    }
+                }
+
+                runTimeouts();
+            } catch (Exception e) {
+                logger.warn("run: Exception in event loop {}: {}", _name, e.toString());
+            }
+        }
+
+        synchronized (_tasks) {
+            _closed = true;
+        }
+        runTasks();
+        for (Runnable task : _stopTasks) {
+            try {
+                task.run();
+            } catch (Exception e) {
+                logger.warn("run: Exception while stopping event loop {}: {}", _name, e.toString());
+            }
+        }
+        _stopTasks.clear();
+
+        for (SelectionKey key : _selector.keys()) {
+            try {
+                key.channel().close();
+            } catch (IOException e) {
+            }
+        }
+        try {
+            _selector.close();
+        } catch (IOException e) {
+        }
+        logger.debug("run: event loop {} stopped", _name);
+    }
+
+    private void runTasks() {
+        Runnable task;
+        while (null != (task = _tasks.poll())) {
+            try {
+                task.run();
+            } catch (Exception e) {
+                logger.warn("runTasks: Exception in event loop {}: {}", _name, e.toString());
+            }
+        }
+    }
+
+    /**
+     * @return delay before the next timeout in milliseconds, 0 if one is expired,
+     *         -1 if there is none
+     */
+    private long nextTimeoutDelay() {
+        Timeout next;
+        while (null != (next = _timeouts.peek()) && next._cancelled) {
+            _timeouts.poll();
+        }
+        if (null == next) {
+            return -1;
+        }
+
+        long delay = next._deadline - System.nanoTime();
+        return delay > 0 ? TimeUnit.NANOSECONDS.toMillis(delay + 999999) : 0;
+    }
+
+    private void runTimeouts() {
+        long now = System.nanoTime();
+        Timeout next;
+        while (null != (next = _timeouts.peek()) && next._deadline - now <= 0) {
+            _timeouts.poll();
+            if (!next._cancelled) {
+                try {
+                    next._task.run();
+                } catch (Exception e) {
+                    logger.warn("runTimeouts: Exception in event loop {}: {}", _name, e.toString());
+                }
+            }
+        }
+    }
+}
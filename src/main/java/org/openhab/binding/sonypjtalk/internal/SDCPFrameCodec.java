@@ -0,0 +1,213 @@
+/**
+ * Copyright (c) 2010-2018 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.sonypjtalk.internal;
+
+import java.nio.ByteBuffer;
+
+/**
+ * This class encodes and decodes SDCP frames of a community.
+ *
+ * A frame is made of a 10 bytes header followed by its data:
+ * version (0x02), category (0x0A), community (4 bytes), request or
+ * response type, item number (2 bytes) and data length.
+ *
+ * Frames are encoded into and decoded from buffers owned by the caller,
+ * so that no memory is allocated per frame. The data of the last decoded
+ * frame is exposed as a view on the decoded buffer.
+ *
+ * Bytes that can't be the start of a frame of the community (garbage,
+ * truncated frame, ...) are skipped until the next frame header, so that
+ * the stream resynchronises by itself.
+ *
+ * @author Fabien Philippe - Initial contribution
+ *
+ */
+public class SDCPFrameCodec {
+    /**
+     * Length of the header of every SDCP frame.
+     */
+    public static final int HEADER_LENGTH = 10;
+
+    /**
+     * Maximum length of a SDCP frame.
+     */
+    public static final int MAX_FRAME_LENGTH = HEADER_LENGTH + 0xFF;
+
+    /**
+     * Request type of a Set command.
+     */
+    public static final int SET = 0x00;
+
+    /**
+     * Request type of a Get command.
+     */
+    public static final int GET = 0x01;
+
+    private static final byte VERSION = 0x02;
+
+    private static final byte CATEGORY = 0x0A;
+
+    private static final byte RESPONSE_OK = 0x01;
+
+    private static final byte RESPONSE_ERROR = 0x00;
+
+    private final String _communityName;
+
+    private final byte[] _community = new byte[4];
+
+    private int _itemNumber;
+
+    private boolean _success;
+
+    private int _skippedBytes;
+
+    /**
+     * Buffer the last frame has been decoded from, and the view on its data.
+     */
+    private ByteBuffer _source;
+    private ByteBuffer _data;
+
+    /**
+     * @param community used to communicate on the network, 4 characters long
+     */
+    public SDCPFrameCodec(String community) {
+        _communityName = community;
+        for (int i = 0; i < _community.length; i++) {
+            _community[i] = (byte) community.charAt(i);
+        }
+    }
+
+    /**
+     * Writes a request frame into a buffer.
+     *
+     * @param out buffer receiving the frame, in write mode
+     * @param type {@link #SET} or {@link #GET}
+     * @param itemNumber is the item number of the command to be send.
+     * @param data must be set to byte[0] if no data has to be sent.
+     */
+    public void encode(ByteBuffer out, int type, int itemNumber, byte[] data) {
+        out.put(VERSION);
+        out.put(CATEGORY);
+        out.put(_community);
+        out.put((byte) type);
+        out.put((byte) ((itemNumber & 0xFF00) >> 8));
+        out.put((byte) (itemNumber & 0xFF));
+        out.put((byte) data.length);
+        out.put(data);
+    }
+
+    /**
+     * Encodes a request frame into a new array, for frames that are sent many times.
+     *
+     * @param type {@link #SET} or {@link #GET}
+     * @param itemNumber is the item number of the command to be send.
+     * @param data must be set to byte[0] if no data has to be sent.
+     * @return the frame
+     */
+    public byte[] encode(int type, int itemNumber, byte[] data) {
+        ByteBuffer frame = ByteBuffer.allocate(HEADER_LENGTH + data.length);
+        encode(frame, type, itemNumber, data);
+        return frame.array();
+    }
+
+    /**
+     * @return the community of the frames
+     */
+    public String getCommunity() {
+        return _communityName;
+    }
+
+    /**
+     * Attempts to decode a response frame. Bytes preceding the frame header
+     * are skipped. If the buffer doesn't hold a full frame yet, decoding has
+     * to be retried when more bytes are received.
+     *
+     * @param in buffer holding the received bytes, in read mode
+     * @return true if a frame has been decoded and consumed from the buffer
+     */
+    public boolean decode(ByteBuffer in) {
+        _skippedBytes = 0;
+        while (in.remaining() >= HEADER_LENGTH) {
+            int start = in.position();
+            if (!isHeader(in, start)) {
+                skipToNextHeader(in, start);
+                continue;
+            }
+
+            int dataLength = in.get(start + 9) & 0xFF;
+            if (in.remaining() < HEADER_LENGTH + dataLength) {
+                return false;
+            }
+
+            _success = RESPONSE_OK == in.get(start + 6);
+            _itemNumber = ((in.get(start + 7) & 0xFF) << 8) | (in.get(start + 8) & 0xFF);
+
+            if (_source != in) {
+                _source = in;
+                _data = in.duplicate();
+            }
+            _data.limit(start + HEADER_LENGTH + dataLength);
+            _data.position(start + HEADER_LENGTH);
+
+            in.position(start + HEADER_LENGTH + dataLength);
+            return true;
+        }
+        return false;
+    }
+
+    private boolean isHeader(ByteBuffer in, int start) {
+        byte response = in.get(start + 6);
+        return VERSION == in.get(start) && CATEGORY == in.get(start + 1) && _community[0] == in.get(start + 2)
+                && _community[1] == in.get(start + 3) && _community[2] == in.get(start + 4)
+                && _community[3] == in.get(start + 5) && (RESPONSE_OK == response || RESPONSE_ERROR == response);
+    }
+
+    /**
+     * Moves the position of the buffer to the next byte that may start a frame.
+     */
+    private void skipToNextHeader(ByteBuffer in, int start) {
+        int limit = in.limit();
+        int next = start + 1;
+        while (next < limit && !(VERSION == in.get(next) && (next + 1 == limit || CATEGORY == in.get(next + 1)))) {
+            next++;
+        }
+        _skippedBytes += next - start;
+        in.position(next);
+    }
+
+    /**
+     * @return count of bytes skipped by the last call to {@link #decode(ByteBuffer)}
+     */
+    public int getSkippedBytes() {
+        return _skippedBytes;
+    }
+
+    /**
+     * @return item number of the last decoded frame
+     */
+    public int getItemNumber() {
+        return _itemNumber;
+    }
+
+    /**
+     * @return true if the last decoded frame acknowledges the request,
+     *         false if the device refused it
+     */
+    public boolean isSuccess() {
+        return _success;
+    }
+
+    /**
+     * @return a view on the data of the last decoded frame. It is only valid
+     *         until the decoded buffer is modified.
+     */
+    public ByteBuffer getData() {
+        return _data;
+    }
+}
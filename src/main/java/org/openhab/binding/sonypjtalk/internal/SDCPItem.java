@@ -0,0 +1,364 @@
+/**
+ * Copyright (c) 2010-2018 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.sonypjtalk.internal;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * An item of a Sony projector, that can be read by a Get command and/or
+ * written by a Set command, and the registry of every known item.
+ *
+ * Every item carries the decoder of its value and the encoder of the data
+ * of its Set command. Requests without data are encoded once per community
+ * and cached, so that sending them is a buffer copy.
+ *
+ * Values of enumerated items are their labels, for example HDMI1 for the
+ * input. Codes that are not known are labelled by their hexadecimal value.
+ *
+ * Every item also carries the delay its response is waited for once the
+ * request has been sent.
+ *
+ * @author Fabien Philippe - Initial contribution
+ *
+ * @param <T> type of the value of the item
+ */
+public class SDCPItem<T> {
+    /**
+     * Every item, keyed by item number.
+     */
+    private static final Map<Integer, SDCPItem<?>> ITEMS = new LinkedHashMap<>();
+
+    /**
+     * Delay the response of most items is waited for.
+     */
+    static final long DEFAULT_RESPONSE_TIMEOUT = 2000;
+
+    /**
+     * Delay the acknowledge of the power commands is waited for.
+     */
+    private static final long POWER_RESPONSE_TIMEOUT = 4000;
+
+    public static final SDCPItem<String> INPUT = new SDCPItem<>(0x0001, "input", true, true,
+            codes("HDMI1", 0x0002, "HDMI2", 0x0003));
+
+    public static final SDCPItem<String> PICTURE_MODE = new SDCPItem<>(0x0002, "pictureMode", true, true,
+            codes("CINEMA_FILM_1", 0x0000, "CINEMA_FILM_2", 0x0001, "REFERENCE", 0x0002, "TV", 0x0003, "PHOTO",
+                    0x0004, "GAME", 0x0005, "BRIGHT_CINEMA", 0x0006, "BRIGHT_TV", 0x0007, "USER", 0x0008));
+
+    public static final SDCPItem<Integer> CONTRAST = new SDCPItem<>(0x0010, "contrast", true, true,
+            SDCPItem::decodeNumber, SDCPItem::encodeNumber);
+
+    public static final SDCPItem<Integer> BRIGHTNESS = new SDCPItem<>(0x0011, "brightness", true, true,
+            SDCPItem::decodeNumber, SDCPItem::encodeNumber);
+
+    public static final SDCPItem<Integer> COLOR = new SDCPItem<>(0x0012, "color", true, true,
+            SDCPItem::decodeNumber, SDCPItem::encodeNumber);
+
+    public static final SDCPItem<Integer> HUE = new SDCPItem<>(0x0013, "hue", true, true, SDCPItem::decodeNumber,
+            SDCPItem::encodeNumber);
+
+    public static final SDCPItem<Integer> SHARPNESS = new SDCPItem<>(0x0014, "sharpness", true, true,
+            SDCPItem::decodeNumber, SDCPItem::encodeNumber);
+
+    public static final SDCPItem<String> LAMP_CONTROL = new SDCPItem<>(0x001A, "lampControl", true, true,
+            codes("LOW", 0x0000, "HIGH", 0x0001));
+
+    public static final SDCPItem<String> ASPECT = new SDCPItem<>(0x0020, "aspect", true, true,
+            codes("NORMAL", 0x0001, "V_STRETCH", 0x000B, "ZOOM_1_85", 0x000C, "ZOOM_2_35", 0x000D, "STRETCH",
+                    0x000E, "SQUEEZE", 0x000F));
+
+    public static final SDCPItem<Boolean> PICTURE_MUTING = new SDCPItem<>(0x0030, "pictureMuting", true, true,
+            data -> 0 != decodeNumber(data), muting -> encodeNumber(muting ? 1 : 0));
+
+    public static final SDCPItem<String> ERROR_STATUS = new SDCPItem<>(0x0101, "errorStatus", true, false,
+            SDCPItem::decodeErrorStatus, null);
+
+    public static final SDCPItem<PowerStatus> POWER_STATUS = new SDCPItem<>(0x0102, "powerStatus", true, false,
+            data -> PowerStatus.fromCode(data.get(data.position() + 1)), null);
+
+    public static final SDCPItem<Integer> LAMP_TIMER = new SDCPItem<>(0x0113, "lampTimer", true, false,
+            SDCPItem::decodeLampTimer, null);
+
+    /**
+     * Some models only acknowledge the power commands once the lamp sequence started.
+     */
+    public static final SDCPItem<Void> POWER_ON = new SDCPItem<Void>(0x172e, "powerOn", false, true, null, null)
+            .responseTimeout(POWER_RESPONSE_TIMEOUT);
+
+    public static final SDCPItem<Void> POWER_OFF = new SDCPItem<Void>(0x172f, "powerOff", false, true, null, null)
+            .responseTimeout(POWER_RESPONSE_TIMEOUT);
+
+    public static final SDCPItem<String> MODEL_NAME = new SDCPItem<>(0x8001, "modelName", true, false,
+            SDCPItem::decodeString, null);
+
+    public static final SDCPItem<InetAddress> IP = new SDCPItem<>(0x9001, "ip", true, false, SDCPItem::decodeIp,
+            null);
+
+    /**
+     * Error bits of the error status, and their labels.
+     */
+    private static final String[] ERRORS = { "LAMP", "FAN", "COVER", "TEMPERATURE", "POWER_5V", "POWER",
+            "TEMPERATURE_WARNING", "NVM_DATA" };
+
+    private final int _number;
+
+    private final String _id;
+
+    private final boolean _readable;
+
+    private final boolean _writable;
+
+    private final Function<ByteBuffer, T> _decoder;
+
+    private final Function<T, byte[]> _encoder;
+
+    private final Map<String, Integer> _codes;
+
+    private long _responseTimeout = DEFAULT_RESPONSE_TIMEOUT;
+
+    /**
+     * Requests without data, encoded once per community: Set then Get.
+     */
+    private final Map<String, byte[][]> _requestFrames = new ConcurrentHashMap<>();
+
+    private SDCPItem(int number, String id, boolean readable, boolean writable, Function<ByteBuffer, T> decoder,
+            Function<T, byte[]> encoder) {
+        this(number, id, readable, writable, decoder, encoder, null);
+    }
+
+    @SuppressWarnings("unchecked")
+    private SDCPItem(int number, String id, boolean readable, boolean writable, Map<String, Integer> codes) {
+        this(number, id, readable, writable, data -> (T) decodeCode(codes, data),
+                label -> encodeCode(codes, (String) label), codes);
+    }
+
+    private SDCPItem(int number, String id, boolean readable, boolean writable, Function<ByteBuffer, T> decoder,
+            Function<T, byte[]> encoder, Map<String, Integer> codes) {
+        _number = number;
+        _id = id;
+        _readable = readable;
+        _writable = writable;
+        _decoder = decoder;
+        _encoder = encoder;
+        _codes = codes;
+        ITEMS.put(number, this);
+    }
+
+    /**
+     * @return every known item, by item number
+     */
+    public static Collection<SDCPItem<?>> values() {
+        return Collections.unmodifiableCollection(ITEMS.values());
+    }
+
+    /**
+     * @param number of an item
+     * @return the item, or null if it is not known
+     */
+    public static SDCPItem<?> fromNumber(int number) {
+        return ITEMS.get(number);
+    }
+
+    /**
+     * @return item number, sent in the frames
+     */
+    public int getNumber() {
+        return _number;
+    }
+
+    /**
+     * @return identifier of the item, for example pictureMode
+     */
+    public String getId() {
+        return _id;
+    }
+
+    /**
+     * @return true if the item can be read by a Get command
+     */
+    public boolean isReadable() {
+        return _readable;
+    }
+
+    /**
+     * @return true if the item can be written by a Set command
+     */
+    public boolean isWritable() {
+        return _writable;
+    }
+
+    /**
+     * @return delay the response is waited for once the request has been sent, in milliseconds
+     */
+    public long getResponseTimeout() {
+        return _responseTimeout;
+    }
+
+    /**
+     * @param number of an item
+     * @return delay the response of the item is waited for, in milliseconds,
+     *         including for items that are not known
+     */
+    static long getResponseTimeout(int number) {
+        SDCPItem<?> item = ITEMS.get(number);
+        return null == item ? DEFAULT_RESPONSE_TIMEOUT : item._responseTimeout;
+    }
+
+    /**
+     * @return decoder of the data of the Get responses, null if the item can't be read
+     */
+    public Function<ByteBuffer, T> getDecoder() {
+        return _decoder;
+    }
+
+    /**
+     * @return labels of the values of an enumerated item, null for other items
+     */
+    public Collection<String> getLabels() {
+        return null == _codes ? null : Collections.unmodifiableCollection(_codes.keySet());
+    }
+
+    /**
+     * @param value to be written
+     * @return data of the Set command writing the value
+     * @throws IllegalArgumentException if the value is not valid for this item
+     */
+    public byte[] encode(T value) {
+        if (null == _encoder) {
+            if (null != value) {
+                throw new IllegalArgumentException("item " + _id + " has no value");
+            }
+            return SDCPSocket.NO_DATA;
+        }
+        return _encoder.apply(value);
+    }
+
+    /**
+     * Casts a value to the type of the item, for callers that only know the
+     * item at runtime.
+     *
+     * @param value of the item
+     * @return the value
+     */
+    @SuppressWarnings("unchecked")
+    public T cast(Object value) {
+        return (T) value;
+    }
+
+    /**
+     * @param codec of the community
+     * @param type {@link SDCPFrameCodec#SET} or {@link SDCPFrameCodec#GET}
+     * @return the request without data, encoded once per community
+     */
+    byte[] getRequestFrame(SDCPFrameCodec codec, int type) {
+        byte[][] frames = _requestFrames.computeIfAbsent(codec.getCommunity(),
+                community -> new byte[][] { codec.encode(SDCPFrameCodec.SET, _number, SDCPSocket.NO_DATA),
+                        codec.encode(SDCPFrameCodec.GET, _number, SDCPSocket.NO_DATA) });
+        return frames[SDCPFrameCodec.SET == type ? 0 : 1];
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s (%04x)", _id, _number);
+    }
+
+    private SDCPItem<T> responseTimeout(long responseTimeout) {
+        _responseTimeout = responseTimeout;
+        return this;
+    }
+
+    private static Map<String, Integer> codes(Object... labelsAndCodes) {
+        Map<String, Integer> codes = new LinkedHashMap<>();
+        for (int i = 0; i < labelsAndCodes.length; i += 2) {
+            codes.put((String) labelsAndCodes[i], (Integer) labelsAndCodes[i + 1]);
+        }
+        return codes;
+    }
+
+    private static String decodeCode(Map<String, Integer> codes, ByteBuffer data) {
+        int code = decodeNumber(data);
+        for (Map.Entry<String, Integer> entry : codes.entrySet()) {
+            if (entry.getValue() == code) {
+                return entry.getKey();
+            }
+        }
+        return String.format("%04x", code);
+    }
+
+    private static byte[] encodeCode(Map<String, Integer> codes, String label) {
+        Integer code = codes.get(label);
+        if (null == code) {
+            throw new IllegalArgumentException("unknown value " + label);
+        }
+        return encodeNumber(code);
+    }
+
+    private static int decodeNumber(ByteBuffer data) {
+        if (data.remaining() < 2) {
+            throw new IllegalArgumentException("2 bytes expected");
+        }
+        return data.getShort(data.position()) & 0xFFFF;
+    }
+
+    private static byte[] encodeNumber(Integer number) {
+        return new byte[] { (byte) ((number & 0xFF00) >> 8), (byte) (number & 0xFF) };
+    }
+
+    private static Integer decodeLampTimer(ByteBuffer data) {
+        if (data.remaining() != 2) {
+            return null;
+        }
+        return data.getShort(data.position()) & 0xFFFF;
+    }
+
+    private static String decodeErrorStatus(ByteBuffer data) {
+        int errors = decodeNumber(data);
+        if (0 == errors) {
+            return "NO_ERROR";
+        }
+
+        StringBuilder labels = new StringBuilder();
+        for (int i = 0; i < ERRORS.length; i++) {
+            if (0 != (errors & (1 << i))) {
+                labels.append(labels.length() > 0 ? "," : "").append(ERRORS[i]);
+            }
+        }
+        return labels.toString();
+    }
+
+    private static String decodeString(ByteBuffer data) {
+        StringBuilder string = new StringBuilder(data.remaining());
+        while (data.hasRemaining()) {
+            byte octet = data.get();
+            if (0 == octet) {
+                break;
+            }
+            string.append((char) (octet & 0xFF));
+        }
+        return string.toString();
+    }
+
+    private static InetAddress decodeIp(ByteBuffer data) {
+        byte[] ip = new byte[data.remaining()];
+        data.get(ip);
+        try {
+            return InetAddress.getByAddress(ip);
+        } catch (UnknownHostException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,286 @@
+/**
+ * Copyright (c) 2010-2018 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.sonypjtalk.internal;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics of the communication with a PJTalk device: response times per
+ * item, connection attempts, failures, handoffs and queue depth, recorded by its
+ * {@link SDCPSocket}, and the skew of its polls, recorded by its handler.
+ *
+ * Counters are {@link LongAdder}s and histograms are {@link LatencyHistogram}s:
+ * recording allocates nothing, apart from the histogram of an item the first
+ * time it is requested. Histograms hold every duration since the connection
+ * was created, or since they were last taken, so that they can be published
+ * per interval.
+ *
+ * @author Fabien Philippe - Initial contribution
+ *
+ */
+public class SDCPMetrics {
+    private final Map<Integer, LatencyHistogram> _responseTimes = new ConcurrentHashMap<>();
+
+    private final LatencyHistogram _connectTimes = new LatencyHistogram();
+
+    private final LatencyHistogram _pollSkews = new LatencyHistogram();
+
+    private final LongAdder _requests = new LongAdder();
+
+    private final LongAdder _timeouts = new LongAdder();
+
+    private final LongAdder _expired = new LongAdder();
+
+    private final LongAdder _lateResponses = new LongAdder();
+
+    private final LongAdder _refused = new LongAdder();
+
+    private final LongAdder _headerMismatches = new LongAdder();
+
+    private final LongAdder _unexpectedResponses = new LongAdder();
+
+    private final LongAdder _connects = new LongAdder();
+
+    private final LongAdder _connectFailures = new LongAdder();
+
+    private final LongAdder _reconnects = new LongAdder();
+
+    private final LongAdder _rejected = new LongAdder();
+
+    private final LongAdder _handoffs = new LongAdder();
+
+    private volatile int _queueDepth;
+
+    private final LongAccumulator _maxQueueDepth = new LongAccumulator(Math::max, 0);
+
+    /**
+     * @param itemNumber of a request
+     * @return the histogram of the response times of the item, that is created the
+     *         first time. It is looked up when the request is submitted, so that
+     *         the event loop records the response time without boxing the item number.
+     */
+    LatencyHistogram responseTimes(int itemNumber) {
+        return _responseTimes.computeIfAbsent(itemNumber, number -> new LatencyHistogram());
+    }
+
+    void recordRequest() {
+        _requests.increment();
+    }
+
+    void recordTimeout() {
+        _timeouts.increment();
+    }
+
+    /**
+     * Records a request dropped because its deadline elapsed before it was sent.
+     */
+    void recordExpired() {
+        _expired.increment();
+    }
+
+    /**
+     * Records a response received after its request timed out.
+     */
+    void recordLateResponse() {
+        _lateResponses.increment();
+    }
+
+    void recordRefused() {
+        _refused.increment();
+    }
+
+    /**
+     * Records bytes skipped because they didn't start with a frame header of the community.
+     */
+    void recordHeaderMismatch() {
+        _headerMismatches.increment();
+    }
+
+    /**
+     * Records a response to an item that was not requested.
+     */
+    void recordUnexpectedResponse() {
+        _unexpectedResponses.increment();
+    }
+
+    /**
+     * @param connectTime since the attempt started, in milliseconds
+     * @param reconnect true if the device had been connected before
+     */
+    void recordConnect(long connectTime, boolean reconnect) {
+        _connects.increment();
+        _connectTimes.record(connectTime);
+        if (reconnect) {
+            _reconnects.increment();
+        }
+    }
+
+    void recordConnectFailure() {
+        _connectFailures.increment();
+    }
+
+    void recordRejected() {
+        _rejected.increment();
+    }
+
+    /**
+     * Records a connection closed because its lease expired.
+     */
+    void recordHandoff() {
+        _handoffs.increment();
+    }
+
+    /**
+     * @param queueDepth count of requests waiting to be sent or answered
+     */
+    void recordQueueDepth(int queueDepth) {
+        _queueDepth = queueDepth;
+        _maxQueueDepth.accumulate(queueDepth);
+    }
+
+    /**
+     * @param skew delay between the time a poll was scheduled for and the time it
+     *            started, in milliseconds
+     */
+    public void recordPollSkew(long skew) {
+        _pollSkews.record(skew);
+    }
+
+    /**
+     * @return response times, keyed by item number
+     */
+    public Map<Integer, LatencyHistogram> getResponseTimes() {
+        return Collections.unmodifiableMap(_responseTimes);
+    }
+
+    /**
+     * @return response times of every item together
+     */
+    public LatencyHistogram getAllResponseTimes() {
+        LatencyHistogram all = new LatencyHistogram();
+        for (LatencyHistogram histogram : _responseTimes.values()) {
+            all.add(histogram);
+        }
+        return all;
+    }
+
+    /**
+     * @return response times of every item together recorded since the last call,
+     *         that are forgotten
+     */
+    public LatencyHistogram takeAllResponseTimes() {
+        LatencyHistogram all = new LatencyHistogram();
+        for (LatencyHistogram histogram : _responseTimes.values()) {
+            all.add(histogram.takeSnapshot());
+        }
+        return all;
+    }
+
+    /**
+     * @return poll skews recorded since the last call, that are forgotten
+     */
+    public LatencyHistogram takePollSkews() {
+        return _pollSkews.takeSnapshot();
+    }
+
+    public LatencyHistogram getConnectTimes() {
+        return _connectTimes;
+    }
+
+    public LatencyHistogram getPollSkews() {
+        return _pollSkews;
+    }
+
+    public long getRequests() {
+        return _requests.sum();
+    }
+
+    public long getTimeouts() {
+        return _timeouts.sum();
+    }
+
+    public long getExpired() {
+        return _expired.sum();
+    }
+
+    public long getLateResponses() {
+        return _lateResponses.sum();
+    }
+
+    public long getRefused() {
+        return _refused.sum();
+    }
+
+    public long getHeaderMismatches() {
+        return _headerMismatches.sum();
+    }
+
+    public long getUnexpectedResponses() {
+        return _unexpectedResponses.sum();
+    }
+
+    public long getConnects() {
+        return _connects.sum();
+    }
+
+    public long getConnectFailures() {
+        return _connectFailures.sum();
+    }
+
+    public long getReconnects() {
+        return _reconnects.sum();
+    }
+
+    public long getRejected() {
+        return _rejected.sum();
+    }
+
+    public long getHandoffs() {
+        return _handoffs.sum();
+    }
+
+    /**
+     * @return count of requests waiting to be sent or answered
+     */
+    public int getQueueDepth() {
+        return _queueDepth;
+    }
+
+    /**
+     * @return highest count of requests waiting to be sent or answered
+     */
+    public long getMaxQueueDepth() {
+        return _maxQueueDepth.get();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder metrics = new StringBuilder();
+        metrics.append("requests=").append(getRequests()).append(" timeouts=").append(getTimeouts())
+                .append(" expired=").append(getExpired()).append(" lateResponses=").append(getLateResponses())
+                .append(" refused=").append(getRefused()).append(" headerMismatches=").append(getHeaderMismatches())
+                .append(" unexpectedResponses=").append(getUnexpectedResponses()).append(" connects=")
+                .append(getConnects()).append(" connectFailures=").append(getConnectFailures())
+                .append(" reconnects=").append(getReconnects()).append(" rejected=").append(getRejected())
+                .append(" handoffs=").append(getHandoffs())
+                .append(" queueDepth=").append(getQueueDepth()).append("/").append(getMaxQueueDepth())
+                .append(" connect[").append(_connectTimes).append("] pollSkew[").append(_pollSkews).append("]");
+        for (Map.Entry<Integer, LatencyHistogram> responseTimes : _responseTimes.entrySet()) {
+            SDCPItem<?> item = SDCPItem.fromNumber(responseTimes.getKey());
+            metrics.append(" ")
+                    .append(null == item ? String.format("%04x", responseTimes.getKey()) : item.toString())
+                    .append("[").append(responseTimes.getValue()).append("]");
+        }
+        return metrics.toString();
+    }
+}
@@ -0,0 +1,50 @@
+/**
+ * Copyright (c) 2010-2018 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.sonypjtalk.internal;
+
+import java.io.IOException;
+
+/**
+ * Signals that a PJTalk device answered a request with an error, for example
+ * because the item can't be read or written in the current power status.
+ *
+ * @author Fabien Philippe - Initial contribution
+ *
+ */
+public class SDCPRefusedException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    private final int _itemNumber;
+
+    private final String _errorCode;
+
+    /**
+     * @param itemNumber of the refused request
+     * @param errorCode sent by the device, in hexadecimal
+     */
+    public SDCPRefusedException(int itemNumber, String errorCode) {
+        super("item " + itemNumber + " refused by the device, error " + errorCode);
+        _itemNumber = itemNumber;
+        _errorCode = errorCode;
+    }
+
+    /**
+     * @return item number of the refused request
+     */
+    public int getItemNumber() {
+        return _itemNumber;
+    }
+
+    /**
+     * @return error code sent by the device, in hexadecimal
+     */
+    public String getErrorCode() {
+        return _errorCode;
+    }
+}
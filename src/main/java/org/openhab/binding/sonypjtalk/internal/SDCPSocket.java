@@ -9,12 +9,29 @@
 package org.openhab.binding.sonypjtalk.internal;
 
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
+import java.net.ConnectException;
 import java.net.InetSocketAddress;
-import java.net.Socket;
 import java.net.SocketTimeoutException;
+import java.net.StandardSocketOptions;
 import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -25,17 +42,121 @@ import org.slf4j.LoggerFactory;
  * Even so, this class is made to allow different device type
  * to communicate thru PJTalk - SDCP communication.
  *
+ * The TCP channel is non blocking and driven by a {@link SDCPEventLoop}:
+ * requests are queued and sent in order, and the asynchronous variants
+ * return a future completed by the event loop. The blocking variants only
+ * wait for this future. Requests submitted together are written together,
+ * up to the pipeline depth, and responses are matched by item number.
+ *
+ * Every request has its own deadline, and its response is waited for the
+ * response timeout of its item, bounded by the deadline. A request whose
+ * deadline elapsed before it could be sent is dropped. A request that is
+ * not answered in time fails alone: the connection is kept, and the late
+ * response, if any, is discarded when it arrives rather than taken as the
+ * response of a newer request. As devices answer in order, a request that
+ * timed out is forgotten once a request sent after it is answered, or
+ * after {@link #LATE_RESPONSE_WINDOW}. Until then, no request for the same
+ * item is sent, as its response could not be told from the late one. The
+ * connection is only closed once {@link #MAX_CONSECUTIVE_TIMEOUTS} requests
+ * in a row are not answered.
+ *
+ * Set commands are sent before any pending Get command, and a Set command
+ * supersedes the pending one with the same coalescing key (power on and
+ * power off for instance). Identical pending Get commands are sent once.
+ * The count of pending requests is bounded: when it is reached, a Set
+ * command drops the oldest pending Get command, otherwise the new request
+ * is rejected.
+ *
+ * Connection attempts are ruled by a {@link CircuitBreaker}: once an attempt
+ * failed, requests fail immediately until a backoff delay elapsed, then a
+ * single attempt probes the device again.
+ *
+ * The sockets of a fleet share an {@link AdmissionController}: a socket
+ * waits for its permit before opening its connection and before sending
+ * every request, so that the connects and the requests in flight of the
+ * whole fleet are bounded.
+ *
+ * How long the connection is held is ruled by a {@link ConnectionPolicy}:
+ * it is kept open by default, and can be closed once unused or once its
+ * lease expired, so that the single connection accepted by the device is
+ * free for other controllers.
+ *
+ * Frames are encoded and decoded by a {@link SDCPFrameCodec} in buffers
+ * owned by the socket. Requests of {@link SDCPItem}s without data are
+ * copied from frames encoded once. Responses can be decoded straight from
+ * the receive buffer by a decoder given with the request.
+ *
+ * Response and connection times, failures and queue depth are recorded in
+ * the {@link SDCPMetrics} of the socket.
+ *
  * @author Fabien Philippe - Initial contribution
  *
  */
-public class SDCPSocket {
+public class SDCPSocket implements SDCPEventLoop.Handler {
     private final Logger logger = LoggerFactory.getLogger(SDCPSocket.class);
 
+    /**
+     * Default TCP port used by PJTalk devices.
+     */
+    public static final int DEFAULT_PORT = 53484;
+
+    /**
+     * Data of commands that don't need any.
+     */
+    public static final byte[] NO_DATA = new byte[0];
+
+    /**
+     * TCP communication must be opened in less than 5 seconds.
+     */
+    private static final long CONNECT_TIMEOUT = 5000;
+
+    /**
+     * All other communication must be done in less than 2 seconds, unless
+     * the item of the request waits longer.
+     */
+    private static final long RESPONSE_TIMEOUT = SDCPItem.DEFAULT_RESPONSE_TIMEOUT;
+
+    /**
+     * Delay a late response to a request that timed out is expected for.
+     */
+    static final long LATE_RESPONSE_WINDOW = 5000;
+
+    /**
+     * Count of requests in a row not answered after which the connection is
+     * taken as broken.
+     */
+    static final int MAX_CONSECUTIVE_TIMEOUTS = 3;
+
+    /**
+     * Deadline of the requests submitted without one.
+     */
+    private static final long NO_DEADLINE = Long.MAX_VALUE;
+
+    /**
+     * Default maximum count of requests waiting to be sent.
+     */
+    private static final int DEFAULT_MAX_PENDING = 32;
+
+    /**
+     * Decoder of the requests returning the raw data.
+     */
+    private static final Function<ByteBuffer, byte[]> COPY = SDCPSocket::copy;
+
+    /**
+     * Blocking variants never wait longer than this, even if the event loop is gone.
+     */
+    static final long BLOCKING_TIMEOUT = CONNECT_TIMEOUT + RESPONSE_TIMEOUT + 1000;
+
     /**
      * Hostname of the PJTalk device
      */
     private String _hostName;
 
+    /**
+     * TCP port of the PJTalk device
+     */
+    private int _port;
+
     /**
      * Community used for PJTalk devices on the network.
      * By default, the community is SONY.
@@ -43,35 +164,364 @@ public class SDCPSocket {
     private String _community;
 
     /**
-     * TCP socket used to communicate with the device.
+     * Codec of the frames exchanged with the device.
+     */
+    private final SDCPFrameCodec _codec;
+
+    /**
+     * Event loop driving the channel.
+     */
+    private final SDCPEventLoop _eventLoop;
+
+    /**
+     * Resolved address of the device.
+     */
+    private volatile InetSocketAddress _address;
+
+    /**
+     * TCP channel used to communicate with the device.
      *
-     * @remark this socket has to be kept open as far as
+     * @remark this channel has to be kept open as far as
      *         PJTalk devices seems to accept only one connection
-     *         at the same time. every thread have to share this
-     *         socket.
+     *         at the same time. every thread talking to the same
+     *         device have to share this socket, see {@link SDCPSocketRegistry}.
+     *         It is only closed as the connection policy allows.
+     *         It is only accessed by the event loop thread.
+     */
+    private SocketChannel _channel;
+
+    private SelectionKey _key;
+
+    private volatile boolean _connected;
+
+    /**
+     * Completed when the pending connection attempt ends.
+     */
+    private CompletableFuture<Void> _connectFuture;
+
+    private SDCPEventLoop.Timeout _connectTimeout;
+
+    /**
+     * Rules the connection attempts while the device is unreachable.
+     */
+    private final CircuitBreaker _breaker = new CircuitBreaker();
+
+    /**
+     * Limits the connects and the requests in flight of the fleet, null if they
+     * are not limited. The socket holds the permit of its connection attempt,
+     * the permit of every request in flight, and a permit handed over and not
+     * used yet.
+     */
+    private final AdmissionController _admission;
+    private boolean _connectAdmitted;
+    private boolean _sendAdmitted;
+    private final Runnable _connectWaiter = this::connectAdmitted;
+    private final Runnable _sendWaiter = this::sendAdmitted;
+
+    /**
+     * Fails every request when the event loop stops while the socket is in use.
+     */
+    private final Runnable _stopTask = this::loopStopped;
+
+    /**
+     * Buffer receiving the messages from the device, in write mode.
+     */
+    private final ByteBuffer _readBuffer = ByteBuffer.allocateDirect(4 * SDCPFrameCodec.MAX_FRAME_LENGTH);
+
+    /**
+     * Buffer holding the frames being sent, in read mode.
+     */
+    private final ByteBuffer _writeBuffer = ByteBuffer.allocateDirect(4 * SDCPFrameCodec.MAX_FRAME_LENGTH);
+
+    /**
+     * Requests submitted by any thread, not yet handled by the event loop.
+     */
+    private final Queue<Request<?>> _submitted = new ConcurrentLinkedQueue<>();
+
+    private final AtomicBoolean _flushScheduled = new AtomicBoolean();
+
+    /**
+     * Set commands waiting to be sent. They are sent before any Get command.
+     */
+    private final Deque<Request<?>> _pendingCommands = new ArrayDeque<>();
+
+    /**
+     * Get commands waiting to be sent.
+     */
+    private final Deque<Request<?>> _pendingPolls = new ArrayDeque<>();
+
+    /**
+     * Maximum count of requests waiting to be sent.
+     */
+    private volatile int _maxPending = DEFAULT_MAX_PENDING;
+
+    /**
+     * Requests sent, waiting for their response, in sending order.
+     */
+    private final Deque<Request<?>> _inFlight = new ArrayDeque<>();
+
+    /**
+     * Count of the requests in flight that timed out, waiting for a late
+     * response, and count of the requests in a row that timed out.
+     */
+    private int _expiredInFlight;
+    private int _consecutiveTimeouts;
+
+    /**
+     * Count of requests that can be sent without waiting for the responses.
+     */
+    private volatile int _pipelineDepth = 1;
+
+    /**
+     * Rules how long the connection is held.
      */
-    private static Socket _socket;
+    private volatile ConnectionPolicy _policy = ConnectionPolicy.PERSISTENT;
+
+    private SDCPEventLoop.Timeout _idleTimer;
+
+    /**
+     * Expiry of the lease of the connection, and whether it expired: no new
+     * request is sent then, and the connection is closed once the requests
+     * sent are answered.
+     */
+    private SDCPEventLoop.Timeout _leaseTimer;
+    private boolean _leaseExpired;
+
+    /**
+     * End of the handoff window, during which the connection is left to other
+     * controllers.
+     */
+    private SDCPEventLoop.Timeout _handoffTimer;
+
+    private final SDCPMetrics _metrics = new SDCPMetrics();
 
     /**
-     * Output stream used to send messages to the device.
+     * Start of the pending connection attempt, as given by {@link System#nanoTime()},
+     * and whether the device has already been connected.
      */
-    private static OutputStream _outputStream;
+    private long _connectStart;
+    private boolean _everConnected;
 
     /**
-     * InputStream used to receive messages from the device.
+     * A request and the future completed with its decoded response.
      */
-    private static InputStream _inputStream;
+    private static class Request<T> {
+        private final int type;
+        private final int itemNumber;
+        private final byte[] data;
+        private final Function<ByteBuffer, T> decoder;
+        private final int coalescingKey;
+        private final byte[] frame;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+        private SDCPEventLoop.Timeout timeout;
+        private LatencyHistogram responseTimes;
+        private long sentTime;
+
+        /**
+         * Time after which the request fails, as given by {@link SDCPSocket#now()},
+         * and whether it timed out while in flight.
+         */
+        private long deadline = NO_DEADLINE;
+        private boolean expired;
+
+        /**
+         * Whether the request holds a permit of the admission controller.
+         */
+        private boolean admitted;
+
+        private Request(int type, int itemNumber, byte[] data, Function<ByteBuffer, T> decoder, int coalescingKey) {
+            this(type, itemNumber, data, decoder, coalescingKey, null);
+        }
+
+        /**
+         * @param frame the request already encoded, null to encode it when it is sent
+         */
+        private Request(int type, int itemNumber, byte[] data, Function<ByteBuffer, T> decoder, int coalescingKey,
+                byte[] frame) {
+            this.type = type;
+            this.itemNumber = itemNumber;
+            this.data = data;
+            this.decoder = decoder;
+            this.coalescingKey = coalescingKey;
+            this.frame = frame;
+        }
+
+        private int length() {
+            return null != frame ? frame.length : SDCPFrameCodec.HEADER_LENGTH + data.length;
+        }
+
+        /**
+         * @return true if this request and another one would get the same result
+         */
+        private boolean isSameAs(Request<?> other) {
+            return type == other.type && itemNumber == other.itemNumber && decoder == other.decoder
+                    && Arrays.equals(data, other.data);
+        }
+
+        /**
+         * Completes this request with the result of another one, that gets the same result.
+         */
+        @SuppressWarnings("unchecked")
+        private void follow(Request<?> other) {
+            ((CompletableFuture<T>) other.future).whenComplete((result, exception) -> {
+                if (null == exception) {
+                    future.complete(result);
+                } else {
+                    future.completeExceptionally(exception);
+                }
+            });
+        }
+
+        /**
+         * Completes the future with the decoded data of the response.
+         *
+         * @param responseData view on the data of the response
+         */
+        private void complete(ByteBuffer responseData) {
+            try {
+                future.complete(decoder.apply(responseData));
+            } catch (RuntimeException e) {
+                future.completeExceptionally(new IOException("unexpected data for item " + itemNumber, e));
+            }
+        }
+    }
 
     /**
-     * The constructor needs to parameters and does nothing other than copy
-     * parameters
+     * The constructor does nothing other than copy parameters
      *
+     * @param eventLoop driving the TCP channel
+     * @param hostName of the device
+     * @param port TCP port of the device
+     * @param community used to communicate on the network
+     */
+    public SDCPSocket(SDCPEventLoop eventLoop, String hostName, int port, String community) {
+        this(eventLoop, hostName, port, community, null);
+    }
+
+    /**
+     * @param eventLoop driving the TCP channel
      * @param hostName of the device
+     * @param port TCP port of the device
      * @param community used to communicate on the network
+     * @param admission limiting the connects and requests in flight, shared by the
+     *            sockets of a fleet and driven by the same event loop. null if they
+     *            are not limited.
      */
-    public SDCPSocket(String hostName, String community) {
+    public SDCPSocket(SDCPEventLoop eventLoop, String hostName, int port, String community,
+            AdmissionController admission) {
+        this._eventLoop = eventLoop;
+        this._admission = admission;
+        this._eventLoop.addStopTask(_stopTask);
         this._hostName = hostName;
+        this._port = port;
         this._community = community;
+        this._codec = new SDCPFrameCodec(community);
+        this._writeBuffer.flip();
+    }
+
+    /**
+     * @return the hostname of the device
+     */
+    public String getHostName() {
+        return _hostName;
+    }
+
+    /**
+     * @return the TCP port of the device
+     */
+    public int getPort() {
+        return _port;
+    }
+
+    /**
+     * @return the community used to communicate with the device
+     */
+    public String getCommunity() {
+        return _community;
+    }
+
+    /**
+     * @return metrics of the communication with the device
+     */
+    public SDCPMetrics getMetrics() {
+        return _metrics;
+    }
+
+    /**
+     * Sets the count of requests that can be sent without waiting for the
+     * responses. PJTalk devices answer requests in order, but some of them
+     * may not accept a new request before having answered the previous one.
+     *
+     * @param pipelineDepth at least 1
+     */
+    public void setPipelineDepth(int pipelineDepth) {
+        _pipelineDepth = Math.max(1, pipelineDepth);
+    }
+
+    /**
+     * Sets the maximum count of requests waiting to be sent.
+     *
+     * @param maxPending at least 1
+     */
+    public void setMaxPending(int maxPending) {
+        _maxPending = Math.max(1, maxPending);
+    }
+
+    /**
+     * Sets the delay after which the connection is closed when no request has
+     * been sent. It is opened again by the next request.
+     *
+     * @param idleTimeout in milliseconds, 0 to keep the connection open
+     */
+    public void setIdleTimeout(long idleTimeout) {
+        setConnectionPolicy(ConnectionPolicy.idle(idleTimeout));
+    }
+
+    /**
+     * Sets how long the connection is held. A connection already open is
+     * ruled by the new policy from now on.
+     *
+     * @param policy of the connection
+     */
+    public void setConnectionPolicy(ConnectionPolicy policy) {
+        _policy = policy;
+        execute(() -> {
+            cancelIdleClose();
+            scheduleIdleClose();
+            if (ConnectionPolicy.Mode.LEASE != policy.getMode()) {
+                cancelLease();
+                if (null != _handoffTimer) {
+                    _handoffTimer.cancel();
+                    _handoffTimer = null;
+                    connectIfPending();
+                }
+                if (_leaseExpired && _inFlight.isEmpty()) {
+                    _leaseExpired = false;
+                    sendNext();
+                }
+            } else if (null == _leaseTimer && !_leaseExpired) {
+                scheduleLease();
+            }
+        });
+    }
+
+    /**
+     * @return how long the connection is held
+     */
+    public ConnectionPolicy getConnectionPolicy() {
+        return _policy;
+    }
+
+    /**
+     * Drops every Get command waiting to be sent. Their futures are cancelled.
+     */
+    public void dropPendingPolls() {
+        execute(() -> {
+            Request<?> request;
+            while (null != (request = _pendingPolls.poll())) {
+                request.future.cancel(false);
+            }
+        });
     }
 
     /**
@@ -80,71 +530,110 @@ public class SDCPSocket {
      * @remarks TCP communication must be opened in less than 5 seconds.
      *          All other communication must be done in less than 2 seconds.
      */
-    public synchronized boolean open() {
+    public boolean open() {
         if (isConnected()) {
             logger.debug("open: connection is already open");
             return true;
-        } else if (null == _socket) {
-            try {
-                _socket = new Socket();
-                _socket.connect(new InetSocketAddress(this._hostName, 53484), 5000);
-                _socket.setSoTimeout(2000);
-                _outputStream = _socket.getOutputStream();
-                _inputStream = _socket.getInputStream();
-                logger.warn("open: connection opened successfully");
-                return true;
-            } catch (UnknownHostException unknownHostException) {
-                logger.warn("open: unknown host. Exception is {}", unknownHostException.getMessage());
-                _socket = null;
-                return false;
-            } catch (IOException ioException) {
-                logger.warn("open: connection failed. Exception is {}", ioException.getMessage());
-                try {
-                    _socket.close();
-                } catch (Exception e) {
-                }
-                _socket = null;
-            } catch (Exception e) {
-                logger.warn("open: connection failed. Exception is {}", e.getMessage());
-                try {
-                    _socket.close();
-                } catch (Exception innerE) {
-                }
-                _socket = null;
-            }
         }
 
+        try {
+            openAsync().get(BLOCKING_TIMEOUT, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            logger.debug("open: connection failed. Exception is {}", e.getCause().toString());
+        } catch (TimeoutException e) {
+            logger.warn("open: connection failed. Exception is {}", e.toString());
+        }
         return false;
     }
 
     /**
-     * close the communication with the device.
+     * Attempts to open a connection with the device.
+     *
+     * @return a future completed when the connection is opened
      */
-    public synchronized void close() {
-        // if there is an old web socket then clean up and destroy
-        if (isConnected()) {
-            try {
-                _socket.close();
-                logger.debug("close: connection successfully closed");
-            } catch (Exception e) {
-                logger.warn("close: Exception during closing the socket {}", e.getMessage());
+    public CompletableFuture<Void> openAsync() {
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        InetSocketAddress address = resolve(result);
+        if (null == address) {
+            return result;
+        }
+
+        if (!execute(() -> {
+            if (_connected) {
+                result.complete(null);
+            } else {
+                connect(address).whenComplete((nothing, exception) -> {
+                    if (null == exception) {
+                        result.complete(null);
+                    } else {
+                        result.completeExceptionally(exception);
+                    }
+                });
             }
+        })) {
+            result.completeExceptionally(new ClosedChannelException());
         }
+        return result;
+    }
 
-        _socket = null;
+    /**
+     * close the communication with the device.
+     * Requests not yet answered fail.
+     */
+    public void close() {
+        execute(() -> {
+            _eventLoop.removeStopTask(_stopTask);
+            ClosedChannelException exception = new ClosedChannelException();
+            failInFlight(exception);
+            failPending(exception);
+            closeChannel();
+        });
     }
 
     /**
-     * Allow to know if communication is opened.
+     * Fails every request, as the event loop stopped and won't drive the
+     * socket anymore.
+     */
+    private void loopStopped() {
+        ClosedChannelException exception = new ClosedChannelException();
+        failSubmitted(exception);
+        failInFlight(exception);
+        failPending(exception);
+        closeChannel();
+    }
+
+    /**
+     * Submits a task to the event loop.
      *
-     * @return true if connected
+     * @return false if the event loop is stopped: the task won't be run
      */
-    public synchronized boolean isConnected() {
-        if (null == _socket) {
+    private boolean execute(Runnable task) {
+        try {
+            _eventLoop.execute(task);
+            return true;
+        } catch (RejectedExecutionException e) {
+            logger.debug("execute: event loop of {} stopped", _hostName);
             return false;
         }
+    }
 
-        return _socket.isConnected();
+    /**
+     * @return state of the breaker ruling connection attempts
+     */
+    public CircuitBreaker.State getCircuitState() {
+        return _breaker.getState();
+    }
+
+    /**
+     * Allow to know if communication is opened.
+     *
+     * @return true if connected
+     */
+    public boolean isConnected() {
+        return _connected;
     }
 
     /**
@@ -154,42 +643,33 @@ public class SDCPSocket {
      * @param data must be set to byte[0] if no data has to be sent.
      * @return true if command has been sent successfully.
      */
-    public synchronized boolean sendSetCommand(int itemNumber, byte[] data) {
-        try {
-            if (isConnected()) {
-                byte[] message = new byte[10 + data.length];
-                int index = 0;
-                message[index++] = (byte) 0x02;
-                message[index++] = (byte) 0x0A;
-                message[index++] = (byte) _community.charAt(0);
-                message[index++] = (byte) _community.charAt(1);
-                message[index++] = (byte) _community.charAt(2);
-                message[index++] = (byte) _community.charAt(3);
-                message[index++] = (byte) 0x00;
-                message[index++] = (byte) ((itemNumber & 0xFF00) / 256);
-                message[index++] = (byte) (itemNumber & 0xFF);
-                message[index++] = (byte) data.length;
-
-                for (byte octet : data) {
-                    message[index++] = octet;
-                }
+    public boolean sendSetCommand(int itemNumber, byte[] data) {
+        return sendSetCommand(itemNumber, data, itemNumber);
+    }
 
-                _outputStream.write(message, 0, index);
-                _outputStream.flush();
-                logger.debug("sendSetCommand: command {} successfully sent.", itemNumber);
-                return true;
-            } else {
-                return false;
-            }
-        } catch (IOException e) {
-            logger.warn("sendSetCommand: IOException {}.", e.toString());
-            close();
-            return false;
-        } catch (Exception e) {
+    /**
+     * Attempts to send a Set command to the device.
+     *
+     * @param itemNumber is the item number of the command to be send.
+     * @param data must be set to byte[0] if no data has to be sent.
+     * @param coalescingKey shared by the commands superseding each other
+     * @return true if command has been sent successfully.
+     */
+    public boolean sendSetCommand(int itemNumber, byte[] data, int coalescingKey) {
+        try {
+            sendSetCommandAsync(itemNumber, data, coalescingKey).get(BLOCKING_TIMEOUT, TimeUnit.MILLISECONDS);
+            logger.debug("sendSetCommand: command {} successfully sent.", itemNumber);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (CancellationException e) {
+            logger.debug("sendSetCommand: command {} not sent, {}.", itemNumber, e.getMessage());
+        } catch (ExecutionException e) {
+            logger.debug("sendSetCommand: Exception {}.", e.getCause().toString());
+        } catch (TimeoutException e) {
             logger.warn("sendSetCommand: Exception {}.", e.toString());
-            close();
-            return false;
         }
+        return false;
     }
 
     /**
@@ -199,119 +679,890 @@ public class SDCPSocket {
      * @param data must be set to byte[0] if no data has to be sent.
      * @return null if failed, byte array if success (eventually void).
      */
-    public synchronized byte[] sendGetCommand(int itemNumber, byte[] data) {
-        try {
-            if (isConnected()) {
-                _socket.setSoTimeout(10);
-                try {
-                    while (-1 != _inputStream.read()) {
-                    }
-                } catch (SocketTimeoutException ex) {
-                }
-                _socket.setSoTimeout(2000);
-                byte[] message = new byte[10 + data.length];
-                int index = 0;
-                message[index++] = (byte) 0x02;
-                message[index++] = (byte) 0x0A;
-                message[index++] = (byte) _community.charAt(0);
-                message[index++] = (byte) _community.charAt(1);
-                message[index++] = (byte) _community.charAt(2);
-                message[index++] = (byte) _community.charAt(3);
-                message[index++] = (byte) 0x01;
-                message[index++] = (byte) ((itemNumber & 0xFF00) / 256);
-                message[index++] = (byte) (itemNumber & 0xFF);
-                message[index++] = (byte) data.length;
-
-                for (byte octet : data) {
-                    message[index++] = octet;
-                }
+    public byte[] sendGetCommand(int itemNumber, byte[] data) {
+        return sendGetCommand(itemNumber, data, COPY);
+    }
 
-                _outputStream.write(message, 0, index);
-                _outputStream.flush();
-                logger.debug("sendGetCommand: command {} successfully sent.", itemNumber);
-                return readGetCommandResult(itemNumber);
-            } else {
-                return null;
-            }
-        } catch (IOException e) {
-            logger.warn("sendGetCommand: IOException {}.", e.toString());
-            close();
-            return null;
-        } catch (Exception e) {
+    /**
+     * Attempts to send a Get command to the device and decode the result.
+     *
+     * @param itemNumber is the item number of the command to be send.
+     * @param data must be set to byte[0] if no data has to be sent.
+     * @param decoder converting the data of the response
+     * @return null if failed, decoded result if success.
+     */
+    public <T> T sendGetCommand(int itemNumber, byte[] data, Function<ByteBuffer, T> decoder) {
+        try {
+            return sendGetCommandAsync(itemNumber, data, decoder).get(BLOCKING_TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            logger.debug("sendGetCommand: Exception {}.", e.getCause().toString());
+        } catch (TimeoutException e) {
             logger.warn("sendGetCommand: Exception {}.", e.toString());
-            close();
-            return null;
         }
+        return null;
     }
 
     /**
-     * Attempts to read the result of a Get command previously sent.
+     * Sends a Set command to the device, opening the connection if needed.
      *
-     * @param itemNumberis the item number of the command that has been previously sent.
-     * @return null if failed, byte array if success (eventually void).
+     * @param itemNumber is the item number of the command to be send.
+     * @param data must be set to byte[0] if no data has to be sent.
+     * @return a future completed with the data of the acknowledge (eventually void).
      */
-    private synchronized byte[] readGetCommandResult(int itemNumber) {
+    public CompletableFuture<byte[]> sendSetCommandAsync(int itemNumber, byte[] data) {
+        return sendSetCommandAsync(itemNumber, data, itemNumber);
+    }
+
+    /**
+     * Sends a Set command to the device, opening the connection if needed.
+     * A pending Set command with the same coalescing key is superseded: it
+     * is not sent and its future fails with a {@link CancellationException}.
+     *
+     * @param itemNumber is the item number of the command to be send.
+     * @param data must be set to byte[0] if no data has to be sent.
+     * @param coalescingKey shared by the commands superseding each other
+     * @return a future completed with the data of the acknowledge (eventually void).
+     */
+    public CompletableFuture<byte[]> sendSetCommandAsync(int itemNumber, byte[] data, int coalescingKey) {
+        return submit(new Request<>(SDCPFrameCodec.SET, itemNumber, data, COPY, coalescingKey));
+    }
+
+    /**
+     * Sends a Get command to the device, opening the connection if needed.
+     *
+     * @param itemNumber is the item number of the command to be send.
+     * @param data must be set to byte[0] if no data has to be sent.
+     * @return a future completed with the result (eventually void).
+     */
+    public CompletableFuture<byte[]> sendGetCommandAsync(int itemNumber, byte[] data) {
+        return sendGetCommandAsync(itemNumber, data, COPY);
+    }
+
+    /**
+     * Sends a Get command to the device, opening the connection if needed.
+     *
+     * @param itemNumber is the item number of the command to be send.
+     * @param data must be set to byte[0] if no data has to be sent.
+     * @param decoder converting the data of the response. It is called on the
+     *            event loop thread with a view on the receive buffer, that must
+     *            not be kept.
+     * @return a future completed with the decoded result.
+     */
+    public <T> CompletableFuture<T> sendGetCommandAsync(int itemNumber, byte[] data, Function<ByteBuffer, T> decoder) {
+        return submit(new Request<>(SDCPFrameCodec.GET, itemNumber, data, decoder, itemNumber));
+    }
+
+    /**
+     * Reads an item of the device, opening the connection if needed.
+     *
+     * @param item to be read
+     * @return a future completed with the decoded value of the item.
+     */
+    public <T> CompletableFuture<T> sendGetCommandAsync(SDCPItem<T> item) {
+        return sendGetCommandAsync(item, NO_DEADLINE);
+    }
+
+    /**
+     * Reads an item of the device, opening the connection if needed.
+     *
+     * @param item to be read
+     * @param timeout deadline of the request in milliseconds. The request is not
+     *            sent once it elapsed, and its response is not waited for beyond.
+     * @return a future completed with the decoded value of the item.
+     */
+    public <T> CompletableFuture<T> sendGetCommandAsync(SDCPItem<T> item, long timeout) {
+        return submit(new Request<>(SDCPFrameCodec.GET, item.getNumber(), NO_DATA, item.getDecoder(), item.getNumber(),
+                item.getRequestFrame(_codec, SDCPFrameCodec.GET)), timeout);
+    }
+
+    /**
+     * Writes an item of the device, opening the connection if needed. A pending
+     * Set command with the same coalescing key is superseded.
+     *
+     * @param item to be written
+     * @param value to be written, null for commands without value
+     * @param coalescingKey shared by the commands superseding each other
+     * @return a future completed with the data of the acknowledge (eventually void).
+     */
+    public <T> CompletableFuture<byte[]> sendSetCommandAsync(SDCPItem<T> item, T value, int coalescingKey) {
+        return sendSetCommandAsync(item, value, coalescingKey, NO_DEADLINE);
+    }
+
+    /**
+     * Writes an item of the device, opening the connection if needed. A pending
+     * Set command with the same coalescing key is superseded.
+     *
+     * @param item to be written
+     * @param value to be written, null for commands without value
+     * @param coalescingKey shared by the commands superseding each other
+     * @param timeout deadline of the command in milliseconds. The command is not
+     *            sent once it elapsed, and its acknowledge is not waited for beyond.
+     * @return a future completed with the data of the acknowledge (eventually void).
+     */
+    public <T> CompletableFuture<byte[]> sendSetCommandAsync(SDCPItem<T> item, T value, int coalescingKey,
+            long timeout) {
+        CompletableFuture<byte[]> result = new CompletableFuture<>();
+        byte[] data;
         try {
-            if (isConnected()) {
-                if (0x02 != _inputStream.read()) {
-                    return null;
-                }
-                if (0x0A != _inputStream.read()) {
-                    return null;
-                }
+            data = item.encode(value);
+        } catch (RuntimeException e) {
+            result.completeExceptionally(e);
+            return result;
+        }
+        byte[] frame = 0 == data.length ? item.getRequestFrame(_codec, SDCPFrameCodec.SET) : null;
+        return submit(new Request<>(SDCPFrameCodec.SET, item.getNumber(), data, COPY, coalescingKey, frame),
+                timeout);
+    }
 
-                if (_community.charAt(0) != _inputStream.read()) {
-                    return null;
+    /**
+     * Schedules a task on the event loop driving the socket, for example to
+     * enforce the deadline of a request.
+     *
+     * @param task to be run on the event loop thread
+     * @param delay before the task is run, in milliseconds
+     * @return the timeout, that can be cancelled from any thread
+     * @throws RejectedExecutionException if the event loop is stopped
+     */
+    SDCPEventLoop.Timeout schedule(Runnable task, long delay) {
+        return _eventLoop.schedule(task, delay);
+    }
+
+    /**
+     * @return a copy of the remaining bytes of a buffer
+     */
+    private static byte[] copy(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    private <T> CompletableFuture<T> submit(Request<T> request) {
+        return submit(request, NO_DEADLINE);
+    }
+
+    /**
+     * @param timeout deadline of the request in milliseconds, {@link #NO_DEADLINE} for none
+     */
+    private <T> CompletableFuture<T> submit(Request<T> request, long timeout) {
+        if (null == resolve(request.future)) {
+            return request.future;
+        }
+
+        if (NO_DEADLINE != timeout) {
+            request.deadline = now() + Math.max(0, timeout);
+        }
+        request.responseTimes = _metrics.responseTimes(request.itemNumber);
+        _submitted.add(request);
+        if (_flushScheduled.compareAndSet(false, true) && !execute(this::flush)) {
+            failSubmitted(new ClosedChannelException());
+        }
+        return request.future;
+    }
+
+    /**
+     * Queues every request submitted since the last flush, so that requests
+     * submitted in a row are sent together.
+     */
+    private void flush() {
+        _flushScheduled.set(false);
+        Request<?> request;
+        while (null != (request = _submitted.poll())) {
+            enqueue(request);
+        }
+        recordQueueDepth();
+
+        if (null == _channel) {
+            connectIfPending();
+        } else {
+            sendNext();
+        }
+    }
+
+    /**
+     * Queues a request depending on its priority, coalescing it with the
+     * pending ones and enforcing the maximum count of pending requests.
+     */
+    private void enqueue(Request<?> request) {
+        if (SDCPFrameCodec.SET == request.type) {
+            Iterator<Request<?>> commands = _pendingCommands.iterator();
+            while (commands.hasNext()) {
+                Request<?> command = commands.next();
+                if (command.coalescingKey == request.coalescingKey) {
+                    commands.remove();
+                    logger.debug("enqueue: command {} superseded by command {}.", command.itemNumber,
+                            request.itemNumber);
+                    command.future.completeExceptionally(
+                            new CancellationException("superseded by command " + request.itemNumber));
                 }
-                if (_community.charAt(1) != _inputStream.read()) {
-                    return null;
+            }
+
+            Request<?> dropped = pendingCount() < _maxPending ? null : _pendingPolls.pollFirst();
+            if (null != dropped) {
+                _metrics.recordRejected();
+                logger.debug("enqueue: request {} dropped, too many pending requests.", dropped.itemNumber);
+                dropped.future.completeExceptionally(new RejectedExecutionException("too many pending requests"));
+            }
+            if (pendingCount() < _maxPending) {
+                _pendingCommands.add(request);
+                return;
+            }
+        } else {
+            if (COPY != request.decoder) {
+                for (Request<?> poll : _pendingPolls) {
+                    if (poll.isSameAs(request)) {
+                        request.follow(poll);
+                        return;
+                    }
                 }
-                if (_community.charAt(2) != _inputStream.read()) {
-                    return null;
+            }
+
+            if (pendingCount() < _maxPending) {
+                _pendingPolls.add(request);
+                return;
+            }
+        }
+
+        _metrics.recordRejected();
+        logger.debug("enqueue: request {} rejected, too many pending requests.", request.itemNumber);
+        request.future.completeExceptionally(new RejectedExecutionException("too many pending requests"));
+    }
+
+    private void recordQueueDepth() {
+        _metrics.recordQueueDepth(pendingCount() + _inFlight.size());
+    }
+
+    private int pendingCount() {
+        return _pendingCommands.size() + _pendingPolls.size();
+    }
+
+    private boolean hasPending() {
+        return !_pendingCommands.isEmpty() || !_pendingPolls.isEmpty();
+    }
+
+    /**
+     * @return the next request to be sent, Set commands first
+     */
+    private Request<?> peekPending() {
+        Request<?> request = _pendingCommands.peek();
+        return null != request ? request : _pendingPolls.peek();
+    }
+
+    private Request<?> pollPending() {
+        Request<?> request = _pendingCommands.poll();
+        return null != request ? request : _pendingPolls.poll();
+    }
+
+    /**
+     * Resolves the address of the device on the caller thread, so that
+     * name resolution never blocks the event loop.
+     *
+     * @param future failed if the host is unknown
+     * @return the address, or null if it can't be resolved
+     */
+    private InetSocketAddress resolve(CompletableFuture<?> future) {
+        InetSocketAddress address = _address;
+        if (null == address || address.isUnresolved()) {
+            address = new InetSocketAddress(_hostName, _port);
+            if (address.isUnresolved()) {
+                logger.warn("open: unknown host {}", _hostName);
+                future.completeExceptionally(new UnknownHostException(_hostName));
+                return null;
+            }
+            _address = address;
+        }
+        return address;
+    }
+
+    private CompletableFuture<Void> connect(InetSocketAddress address) {
+        if (null != _connectFuture) {
+            return _connectFuture;
+        }
+
+        CompletableFuture<Void> connectFuture = new CompletableFuture<>();
+        long now = now();
+        if (!_breaker.allowAttempt(now)) {
+            ConnectException exception = new ConnectException(
+                    "device unreachable, next attempt in " + _breaker.getRetryDelay(now) + " ms");
+            failPending(exception);
+            connectFuture.completeExceptionally(exception);
+            return connectFuture;
+        }
+
+        _connectFuture = connectFuture;
+        if (null != _admission) {
+            if (!_admission.tryAcquireConnect(_connectWaiter)) {
+                logger.debug("open: connection to {} waits for {} other connects", _hostName,
+                        _admission.getWaitingConnects() - 1);
+                return connectFuture;
+            }
+            _connectAdmitted = true;
+        }
+        startConnect(address);
+        return connectFuture;
+    }
+
+    /**
+     * Opens the connection once the admission controller allows it, unless the
+     * socket has been closed meanwhile.
+     */
+    private void connectAdmitted() {
+        _connectAdmitted = true;
+        InetSocketAddress address = _address;
+        if (null == _connectFuture || null != _channel || null == address) {
+            releaseConnect();
+            return;
+        }
+        startConnect(address);
+    }
+
+    private void releaseConnect() {
+        if (_connectAdmitted) {
+            _connectAdmitted = false;
+            _admission.releaseConnect();
+        }
+    }
+
+    private void startConnect(InetSocketAddress address) {
+        _connectStart = System.nanoTime();
+        try {
+            _channel = SocketChannel.open();
+            _channel.configureBlocking(false);
+            _channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            _key = _eventLoop.register(_channel, 0, this);
+            if (_channel.connect(address)) {
+                connected();
+            } else {
+                _key.interestOps(SelectionKey.OP_CONNECT);
+                _connectTimeout = _eventLoop.schedule(
+                        () -> connectFailed(new SocketTimeoutException("connect timed out")), CONNECT_TIMEOUT);
+            }
+        } catch (IOException e) {
+            connectFailed(e);
+        }
+    }
+
+    private void connected() throws IOException {
+        if (null != _connectTimeout) {
+            _connectTimeout.cancel();
+            _connectTimeout = null;
+        }
+        _key.interestOps(SelectionKey.OP_READ);
+        _connected = true;
+        releaseConnect();
+        _metrics.recordConnect(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - _connectStart), _everConnected);
+        _everConnected = true;
+        if (_breaker.succeeded()) {
+            logger.info("open: connection to {} recovered", _hostName);
+        } else {
+            logger.debug("open: connection opened successfully");
+        }
+
+        CompletableFuture<Void> connectFuture = _connectFuture;
+        _connectFuture = null;
+        connectFuture.complete(null);
+        sendNext();
+        scheduleIdleClose();
+        scheduleLease();
+    }
+
+    private void connectFailed(Exception exception) {
+        _metrics.recordConnectFailure();
+        if (_breaker.failed(now())) {
+            logger.warn("open: connection to {} failed, retrying with backoff. Exception is {}", _hostName,
+                    exception.toString());
+        } else {
+            logger.debug("open: connection to {} failed again. Exception is {}", _hostName, exception.toString());
+        }
+        CompletableFuture<Void> connectFuture = _connectFuture;
+        _connectFuture = null;
+        closeChannel();
+        failPending(exception);
+        if (null != connectFuture) {
+            connectFuture.completeExceptionally(exception);
+        }
+    }
+
+    private static long now() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+    }
+
+    @Override
+    public void handleEvent(SelectionKey key) {
+        try {
+            if (key.isConnectable()) {
+                if (_channel.finishConnect()) {
+                    connected();
                 }
-                if (_community.charAt(3) != _inputStream.read()) {
-                    return null;
+                return;
+            }
+            if (key.isWritable()) {
+                write();
+            }
+            if (key.isReadable()) {
+                read();
+            }
+        } catch (IOException e) {
+            if (!_connected) {
+                connectFailed(e);
+            } else {
+                logger.warn("handleEvent: IOException {}.", e.toString());
+                failInFlight(e);
+                closeChannel();
+                connectIfPending();
+            }
+        }
+    }
+
+    /**
+     * Sends the next pending requests, as far as the pipeline allows.
+     */
+    private void sendNext() {
+        if (!_connected || _leaseExpired || !hasPending()) {
+            return;
+        }
+
+        cancelIdleClose();
+        _writeBuffer.compact();
+        long now = now();
+        Request<?> request;
+        boolean admitted = false;
+        while (liveInFlight() < _pipelineDepth && null != (request = peekPending())
+                && _writeBuffer.remaining() >= request.length()) {
+            if (!request.future.isDone() && isExpiredInFlight(request.itemNumber)) {
+                // Sent once the request that timed out is forgotten
+                break;
+            }
+            if (!admitted && !(admitted = acquireSendPermit())) {
+                // Sent once another request of the fleet ends
+                break;
+            }
+            pollPending();
+            if (request.future.isDone()) {
+                // Superseded, cancelled or completed by an identical request
+                continue;
+            }
+            if (NO_DEADLINE != request.deadline && now - request.deadline >= 0) {
+                _metrics.recordExpired();
+                logger.debug("sendNext: request {} dropped, its deadline elapsed before it was sent.",
+                        request.itemNumber);
+                request.future.completeExceptionally(
+                        new TimeoutException("deadline of item " + request.itemNumber + " elapsed before sending"));
+                continue;
+            }
+            if (null != request.frame) {
+                _writeBuffer.put(request.frame);
+            } else {
+                _codec.encode(_writeBuffer, request.type, request.itemNumber, request.data);
+            }
+            _inFlight.add(request);
+            request.admitted = null != _admission;
+            admitted = false;
+            request.sentTime = System.nanoTime();
+            _metrics.recordRequest();
+            Request<?> sent = request;
+            long responseTimeout = SDCPItem.getResponseTimeout(request.itemNumber);
+            if (NO_DEADLINE != request.deadline) {
+                responseTimeout = Math.min(responseTimeout, request.deadline - now);
+            }
+            request.timeout = _eventLoop.schedule(() -> responseTimedOut(sent), responseTimeout);
+        }
+        if (admitted && null != _admission) {
+            _admission.releaseRequest();
+        }
+        _writeBuffer.flip();
+
+        try {
+            write();
+        } catch (IOException e) {
+            logger.warn("sendNext: IOException {}.", e.toString());
+            failInFlight(e);
+            closeChannel();
+            connectIfPending();
+        }
+    }
+
+    /**
+     * @return true if a request can be sent now, false if the socket waits for
+     *         a permit of the admission controller
+     */
+    private boolean acquireSendPermit() {
+        if (null == _admission) {
+            return true;
+        }
+        if (_sendAdmitted) {
+            _sendAdmitted = false;
+            return true;
+        }
+        return _admission.tryAcquireRequest(_sendWaiter);
+    }
+
+    /**
+     * Sends the next request with the permit handed over by the admission
+     * controller, or gives it back if nothing can be sent anymore.
+     */
+    private void sendAdmitted() {
+        _sendAdmitted = true;
+        sendNext();
+        if (_sendAdmitted) {
+            _sendAdmitted = false;
+            _admission.releaseRequest();
+        }
+    }
+
+    /**
+     * Gives back the permit of a request that left the requests in flight.
+     */
+    private void released(Request<?> request) {
+        if (request.admitted) {
+            request.admitted = false;
+            _admission.releaseRequest();
+        }
+    }
+
+    private void write() throws IOException {
+        if (_writeBuffer.hasRemaining()) {
+            _channel.write(_writeBuffer);
+        }
+
+        if (_writeBuffer.hasRemaining()) {
+            _key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        } else {
+            _key.interestOps(SelectionKey.OP_READ);
+            logger.debug("write: {} command(s) waiting for response.", _inFlight.size());
+        }
+    }
+
+    private void read() throws IOException {
+        if (-1 == _channel.read(_readBuffer)) {
+            throw new ConnectException("connection closed by the device");
+        }
+
+        _readBuffer.flip();
+        try {
+            while (!_inFlight.isEmpty() && _codec.decode(_readBuffer)) {
+                if (_codec.getSkippedBytes() > 0) {
+                    _metrics.recordHeaderMismatch();
+                    logger.debug("read: {} unexpected bytes skipped.", _codec.getSkippedBytes());
                 }
 
-                if (0x01 != _inputStream.read()) {
-                    return null;
+                Request<?> request = removeInFlight(_codec.getItemNumber());
+                if (null == request) {
+                    // Stale response of a previous request
+                    _metrics.recordUnexpectedResponse();
+                    logger.debug("read: response to item {} ignored, it has not been requested.",
+                            _codec.getItemNumber());
+                    continue;
                 }
 
-                if (((itemNumber & 0xFF00) / 256) != _inputStream.read()) {
-                    return null;
+                _consecutiveTimeouts = 0;
+                request.timeout.cancel();
+                if (request.expired) {
+                    _expiredInFlight--;
+                    _metrics.recordLateResponse();
+                    logger.debug("read: late response to item {} discarded.", request.itemNumber);
+                    continue;
                 }
-                if ((itemNumber & 0xFF) != _inputStream.read()) {
-                    return null;
+
+                logger.debug("read: message read successfully.");
+                request.responseTimes.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - request.sentTime));
+                if (_codec.isSuccess()) {
+                    request.complete(_codec.getData());
+                } else {
+                    _metrics.recordRefused();
+                    request.future.completeExceptionally(
+                            new SDCPRefusedException(request.itemNumber, errorCode(_codec.getData())));
                 }
+            }
+        } finally {
+            if (_inFlight.isEmpty()) {
+                // Bytes received without having been requested are discarded
+                _readBuffer.position(_readBuffer.limit());
+            }
+            _readBuffer.compact();
+        }
 
-                logger.debug("readGetCommandResult: header read successfully.");
+        recordQueueDepth();
+        afterResponse();
+    }
 
-                int dataLength = _inputStream.read();
+    /**
+     * Sends the next requests once requests in flight ended, or closes the
+     * connection if its lease expired and nothing is waiting to be answered.
+     */
+    private void afterResponse() {
+        if (_leaseExpired && 0 == liveInFlight()) {
+            closeChannel();
+            return;
+        }
+        sendNext();
+        scheduleIdleClose();
+    }
 
-                byte[] message = new byte[dataLength];
-                int index = 0;
-                while (index < dataLength) {
-                    message[index] = (byte) _inputStream.read();
-                    index++;
-                }
+    /**
+     * @return count of requests in flight that did not time out
+     */
+    private int liveInFlight() {
+        return _inFlight.size() - _expiredInFlight;
+    }
 
-                logger.debug("readGetCommandResult: message read successfully.");
-                return message;
-            } else {
-                return null;
+    /**
+     * Closes the connection once the idle timeout elapsed, if nothing is
+     * waiting to be sent or answered.
+     */
+    private void scheduleIdleClose() {
+        long idleTimeout = _policy.getIdleTimeout();
+        if (!_connected || 0 == idleTimeout || liveInFlight() > 0 || hasPending()) {
+            return;
+        }
+
+        cancelIdleClose();
+        _idleTimer = _eventLoop.schedule(() -> {
+            _idleTimer = null;
+            if (0 == liveInFlight() && !hasPending()) {
+                logger.debug("close: connection to {} unused for {} ms", _hostName, idleTimeout);
+                closeChannel();
             }
-        } catch (SocketTimeoutException e) {
-            logger.warn("readGetCommandResult: SocketTimeoutException {}.", e.toString());
-            close();
-            return null;
-        } catch (IOException e) {
-            logger.warn("readGetCommandResult: IOException {}.", e.toString());
-            close();
-            return null;
-        } catch (Exception e) {
-            logger.warn("readGetCommandResult: Exception {}.", e.toString());
-            close();
+        }, idleTimeout);
+    }
+
+    private void cancelIdleClose() {
+        if (null != _idleTimer) {
+            _idleTimer.cancel();
+            _idleTimer = null;
+        }
+    }
+
+    /**
+     * Stops sending new requests once the lease of the connection expired, if
+     * the connection is leased.
+     */
+    private void scheduleLease() {
+        ConnectionPolicy policy = _policy;
+        if (!_connected || ConnectionPolicy.Mode.LEASE != policy.getMode() || null != _leaseTimer) {
+            return;
+        }
+
+        _leaseTimer = _eventLoop.schedule(() -> {
+            _leaseTimer = null;
+            _leaseExpired = true;
+            logger.debug("close: lease of the connection to {} expired, {} request(s) waiting for response",
+                    _hostName, liveInFlight());
+            if (0 == liveInFlight()) {
+                closeChannel();
+            }
+        }, policy.getLeaseTime());
+    }
+
+    private void cancelLease() {
+        if (null != _leaseTimer) {
+            _leaseTimer.cancel();
+            _leaseTimer = null;
+        }
+    }
+
+    /**
+     * Leaves the connection to other controllers for the handoff window, once
+     * the lease of the connection expired and it has been closed. The requests
+     * submitted meanwhile are then sent together.
+     */
+    private void startHandoffWindow() {
+        long handoffWindow = _policy.getHandoffWindow();
+        _metrics.recordHandoff();
+        if (null != _handoffTimer) {
+            _handoffTimer.cancel();
+        }
+        _handoffTimer = _eventLoop.schedule(() -> {
+            _handoffTimer = null;
+            logger.debug("open: handoff window of {} elapsed, {} request(s) pending", _hostName, pendingCount());
+            connectIfPending();
+        }, handoffWindow);
+    }
+
+    /**
+     * @param itemNumber of a request to send
+     * @return true if a request for this item timed out and its late response
+     *         may still be received
+     */
+    private boolean isExpiredInFlight(int itemNumber) {
+        if (0 == _expiredInFlight) {
+            return false;
+        }
+        for (Request<?> request : _inFlight) {
+            if (request.expired && request.itemNumber == itemNumber) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Removes the oldest request sent for an item. As devices answer in order,
+     * the requests sent before it that timed out won't be answered anymore:
+     * they are forgotten too.
+     *
+     * @param itemNumber of the response received
+     * @return the request, or null if this item has not been requested
+     */
+    private Request<?> removeInFlight(int itemNumber) {
+        Request<?> answered = null;
+        for (Request<?> request : _inFlight) {
+            if (request.itemNumber == itemNumber) {
+                answered = request;
+                break;
+            }
+        }
+        if (null == answered) {
             return null;
         }
+
+        Iterator<Request<?>> requests = _inFlight.iterator();
+        while (requests.hasNext()) {
+            Request<?> request = requests.next();
+            if (request == answered) {
+                requests.remove();
+                released(request);
+                break;
+            }
+            if (request.expired) {
+                requests.remove();
+                released(request);
+                request.timeout.cancel();
+                _expiredInFlight--;
+            }
+        }
+        return answered;
+    }
+
+    /**
+     * @return the error code sent by the device when it refuses a request
+     */
+    private static String errorCode(ByteBuffer data) {
+        if (data.remaining() < 2) {
+            return "unknown";
+        }
+        return String.format("%02x%02x", data.get(data.position()), data.get(data.position() + 1));
+    }
+
+    /**
+     * Fails a request not answered in time. The connection is kept, unless too
+     * many requests in a row were not answered: the request stays in flight,
+     * so that its late response is recognized and discarded.
+     */
+    private void responseTimedOut(Request<?> request) {
+        if (request.expired || !_inFlight.contains(request)) {
+            return;
+        }
+
+        _metrics.recordTimeout();
+        SocketTimeoutException exception = new SocketTimeoutException("no response to item " + request.itemNumber);
+        if (++_consecutiveTimeouts >= MAX_CONSECUTIVE_TIMEOUTS) {
+            logger.warn("read: no response to item {}, {} requests in a row not answered.", request.itemNumber,
+                    _consecutiveTimeouts);
+            failInFlight(exception);
+            closeChannel();
+            connectIfPending();
+            return;
+        }
+
+        logger.debug("read: no response to item {}.", request.itemNumber);
+        request.expired = true;
+        _expiredInFlight++;
+        // Its late response is not waited for by the fleet
+        released(request);
+        request.future.completeExceptionally(exception);
+        request.timeout = _eventLoop.schedule(() -> forget(request), LATE_RESPONSE_WINDOW);
+        afterResponse();
+    }
+
+    /**
+     * Forgets a request that timed out once its late response is not expected anymore.
+     */
+    private void forget(Request<?> request) {
+        if (_inFlight.remove(request)) {
+            released(request);
+            _expiredInFlight--;
+            afterResponse();
+        }
+    }
+
+    private void connectIfPending() {
+        InetSocketAddress address = _address;
+        if (hasPending() && null != address && null == _handoffTimer) {
+            connect(address);
+        }
+    }
+
+    private void failInFlight(Exception exception) {
+        Request<?> request;
+        while (null != (request = _inFlight.poll())) {
+            released(request);
+            if (null != request.timeout) {
+                request.timeout.cancel();
+            }
+            request.future.completeExceptionally(exception);
+        }
+        _expiredInFlight = 0;
+        _consecutiveTimeouts = 0;
+    }
+
+    private void failSubmitted(Exception exception) {
+        Request<?> request;
+        while (null != (request = _submitted.poll())) {
+            request.future.completeExceptionally(exception);
+        }
+    }
+
+    private void failPending(Exception exception) {
+        Request<?> request;
+        while (null != (request = pollPending())) {
+            request.future.completeExceptionally(exception);
+        }
+    }
+
+    private void closeChannel() {
+        // Late responses won't come on another connection
+        failInFlight(new ClosedChannelException());
+        boolean leaseExpired = _leaseExpired;
+        cancelIdleClose();
+        cancelLease();
+        _leaseExpired = false;
+        if (null != _connectTimeout) {
+            _connectTimeout.cancel();
+            _connectTimeout = null;
+        }
+        if (null != _admission) {
+            _admission.cancel(_connectWaiter);
+            _admission.cancel(_sendWaiter);
+            releaseConnect();
+        }
+        if (null != _connectFuture) {
+            // Closed while connecting, or while waiting for the permit to connect
+            _breaker.abandoned();
+            _connectFuture.completeExceptionally(new ClosedChannelException());
+        }
+        _connectFuture = null;
+        _connected = false;
+        _readBuffer.clear();
+        _writeBuffer.clear();
+        _writeBuffer.flip();
+
+        if (null != _channel) {
+            if (null != _key) {
+                _key.cancel();
+            }
+            try {
+                _channel.close();
+                logger.debug("close: connection successfully closed");
+            } catch (IOException e) {
+                logger.warn("close: Exception during closing the socket {}", e.getMessage());
+            }
+        }
+        _channel = null;
+        _key = null;
+        if (leaseExpired) {
+            startHandoffWindow();
+        }
     }
 }
@@ -0,0 +1,168 @@
+/**
+ * Copyright (c) 2010-2018 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.sonypjtalk.internal;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class keeps one {@link SDCPSocket} per PJTalk device, keyed by host:port.
+ * PJTalk devices accept only one connection at the same time, so every
+ * connection talking to the same device shares the same socket, while
+ * different devices never share a socket nor a lock.
+ *
+ * A socket is closed when the last {@link ProjectorConnection} using it
+ * releases it. Every socket of a registry is driven by the same
+ * {@link SDCPEventLoop}. The event loop of the default registry is stopped
+ * when no socket is in use anymore. A registry can also be given an event
+ * loop owned by someone else, for example a fleet bridge, that it never stops,
+ * and an {@link AdmissionController} limiting the connects and the requests
+ * in flight of all its sockets.
+ *
+ * @author Fabien Philippe - Initial contribution
+ *
+ */
+public class SDCPSocketRegistry {
+    private static final Logger logger = LoggerFactory.getLogger(SDCPSocketRegistry.class);
+
+    /**
+     * Registry of the connections that don't belong to a fleet.
+     */
+    private static final SDCPSocketRegistry DEFAULT = new SDCPSocketRegistry(null);
+
+    /**
+     * Sockets in use, keyed by host:port.
+     */
+    private final Map<String, Entry> _entries = new HashMap<>();
+
+    /**
+     * Event loop given to the registry, null if the registry owns its event loop.
+     */
+    private final SDCPEventLoop _sharedEventLoop;
+
+    /**
+     * Event loop shared by every socket. When it is owned by the registry, it
+     * is only running while a socket is in use.
+     */
+    private SDCPEventLoop _eventLoop;
+
+    /**
+     * Limits the connects and requests in flight of every socket, null if they
+     * are not limited.
+     */
+    private final AdmissionController _admission;
+
+    private static class Entry {
+        private final SDCPSocket socket;
+        private int references;
+
+        private Entry(SDCPSocket socket) {
+            this.socket = socket;
+        }
+    }
+
+    /**
+     * @param eventLoop driving the sockets, started and stopped by the caller.
+     *            null to let the registry run its own event loop.
+     */
+    public SDCPSocketRegistry(SDCPEventLoop eventLoop) {
+        this(eventLoop, null);
+    }
+
+    /**
+     * @param eventLoop driving the sockets, started and stopped by the caller
+     * @param admission limiting the connects and requests in flight of every
+     *            socket, driven by the same event loop. null if they are not limited.
+     */
+    public SDCPSocketRegistry(SDCPEventLoop eventLoop, AdmissionController admission) {
+        _sharedEventLoop = eventLoop;
+        _eventLoop = eventLoop;
+        _admission = admission;
+    }
+
+    /**
+     * @return the registry of the connections that don't belong to a fleet
+     */
+    public static SDCPSocketRegistry getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Attempts to retrieve the socket of a device, creating it if needed.
+     * Every call must be balanced by a call to {@link #release(SDCPSocket)}.
+     *
+     * @param hostName of the device
+     * @param port TCP port of the device
+     * @param community used to communicate on the network
+     * @return the socket owned by the device
+     */
+    public SDCPSocket acquire(String hostName, int port, String community) {
+        String key = key(hostName, port);
+        synchronized (_entries) {
+            Entry entry = _entries.get(key);
+            if (null == entry) {
+                if (null == _eventLoop) {
+                    try {
+                        _eventLoop = new SDCPEventLoop("SDCP-event-loop");
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    _eventLoop.start();
+                }
+                entry = new Entry(new SDCPSocket(_eventLoop, hostName, port, community, _admission));
+                _entries.put(key, entry);
+            } else if (!entry.socket.getCommunity().equals(community)) {
+                logger.warn("acquire: {} is already used with community {}, ignoring community {}", key,
+                        entry.socket.getCommunity(), community);
+            }
+            entry.references++;
+            return entry.socket;
+        }
+    }
+
+    /**
+     * Releases a socket previously acquired. The socket is closed when it
+     * is not used anymore.
+     *
+     * @param socket to be released
+     */
+    public void release(SDCPSocket socket) {
+        String key = key(socket.getHostName(), socket.getPort());
+        SDCPEventLoop unusedEventLoop = null;
+        synchronized (_entries) {
+            Entry entry = _entries.get(key);
+            if (null == entry || entry.socket != socket) {
+                return;
+            }
+            if (--entry.references > 0) {
+                return;
+            }
+            _entries.remove(key);
+            socket.close();
+            if (_entries.isEmpty() && null == _sharedEventLoop) {
+                unusedEventLoop = _eventLoop;
+                _eventLoop = null;
+            }
+        }
+
+        if (null != unusedEventLoop) {
+            // the loop closes the socket before stopping
+            unusedEventLoop.execute(unusedEventLoop::stop);
+        }
+    }
+
+    private static String key(String hostName, int port) {
+        return hostName + ":" + port;
+    }
+}
@@ -0,0 +1,165 @@
+/**
+ * Copyright (c) 2010-2018 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.sonypjtalk.internal;
+
+import static org.openhab.binding.sonypjtalk.SonyPJTalkBindingConstants.*;
+
+import java.net.InetAddress;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.smarthome.config.discovery.AbstractDiscoveryService;
+import org.eclipse.smarthome.config.discovery.DiscoveryResult;
+import org.eclipse.smarthome.config.discovery.DiscoveryResultBuilder;
+import org.eclipse.smarthome.config.discovery.DiscoveryService;
+import org.eclipse.smarthome.core.thing.Thing;
+import org.eclipse.smarthome.core.thing.ThingUID;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
+import org.osgi.service.component.annotations.Modified;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The {@link SonyPJTalkDiscoveryService} discovers the projectors from the SDAP
+ * advertisements they broadcast periodically. Nothing is sent on the network:
+ * scanning only means listening until the next advertisements.
+ *
+ * @author Fabien Philippe - Initial contribution
+ */
+@Component(service = DiscoveryService.class, immediate = true, configurationPid = "discovery.sonypjtalk")
+public class SonyPJTalkDiscoveryService extends AbstractDiscoveryService implements SDAPListener.Listener {
+    private final Logger logger = LoggerFactory.getLogger(SonyPJTalkDiscoveryService.class);
+
+    /**
+     * Duration of a scan in seconds. Projectors advertise themselves every 30 seconds by default.
+     */
+    private static final int SCAN_TIMEOUT = 60;
+
+    /**
+     * Category of the projectors in the advertisements.
+     */
+    private static final int CATEGORY_PROJECTOR = 0x0A;
+
+    /**
+     * Serial number of every projector already reported, keyed by its address.
+     */
+    private final Map<InetAddress, Integer> _reported = new ConcurrentHashMap<>();
+
+    private boolean _listening;
+
+    private boolean _scanning;
+
+    private boolean _background;
+
+    public SonyPJTalkDiscoveryService() {
+        super(Collections.singleton(THING_TYPE_PROJECTOR), SCAN_TIMEOUT, true);
+    }
+
+    @Override
+    protected void startScan() {
+        synchronized (this) {
+            _scanning = true;
+            // A scan reports every projector again
+            _reported.clear();
+            updateListening();
+        }
+    }
+
+    @Override
+    protected synchronized void stopScan() {
+        super.stopScan();
+        _scanning = false;
+        updateListening();
+    }
+
+    @Override
+    protected synchronized void startBackgroundDiscovery() {
+        _background = true;
+        updateListening();
+    }
+
+    @Override
+    protected synchronized void stopBackgroundDiscovery() {
+        _background = false;
+        updateListening();
+    }
+
+    @Override
+    @Activate
+    protected void activate(Map<String, Object> configProperties) {
+        super.activate(configProperties);
+    }
+
+    @Override
+    @Modified
+    protected void modified(Map<String, Object> configProperties) {
+        super.modified(configProperties);
+    }
+
+    @Override
+    @Deactivate
+    protected synchronized void deactivate() {
+        super.deactivate();
+        _scanning = false;
+        _background = false;
+        updateListening();
+    }
+
+    /**
+     * Listens to the advertisements while scanning or discovering in background.
+     */
+    private void updateListening() {
+        boolean listening = _scanning || _background;
+        if (listening == _listening) {
+            return;
+        }
+
+        _listening = listening;
+        if (listening) {
+            SDAPListener.getInstance().addListener(this);
+        } else {
+            SDAPListener.getInstance().removeListener(this);
+        }
+    }
+
+    @Override
+    public void advertisementReceived(SDAPAdvertisement advertisement) {
+        if (CATEGORY_PROJECTOR != advertisement.getCategory()) {
+            return;
+        }
+
+        // Most advertisements come from projectors already reported: they are
+        // ignored without creating anything, by looking up the address received
+        InetAddress address = advertisement.getAddress();
+        int serialNumber = advertisement.getSerialNumber();
+        Integer reported = _reported.get(address);
+        if (null != reported && serialNumber == reported) {
+            return;
+        }
+
+        // New projector, or projector that moved from another address
+        _reported.values().removeIf(serial -> serialNumber == serial);
+        _reported.put(address, serialNumber);
+        String hostAddress = address.getHostAddress();
+
+        String serial = Integer.toUnsignedString(serialNumber);
+        String productName = advertisement.getProductName();
+        logger.debug("advertisementReceived: found projector {} #{} at {}", productName, serial, hostAddress);
+
+        DiscoveryResult result = DiscoveryResultBuilder.create(new ThingUID(THING_TYPE_PROJECTOR, serial))
+                .withLabel("Sony " + productName).withProperty(CONFIG_IP_ADDRESS, hostAddress)
+                .withProperty(CONFIG_COMMUNITY, advertisement.getCommunity())
+                .withProperty(Thing.PROPERTY_SERIAL_NUMBER, serial).withProperty(Thing.PROPERTY_MODEL_ID, productName)
+                .withRepresentationProperty(Thing.PROPERTY_SERIAL_NUMBER).build();
+        thingDiscovered(result);
+    }
+}
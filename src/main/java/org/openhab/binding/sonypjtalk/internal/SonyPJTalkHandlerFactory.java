@@ -10,10 +10,14 @@ package org.openhab.binding.sonypjtalk.internal;
 
 import static org.openhab.binding.sonypjtalk.SonyPJTalkBindingConstants.*;
 
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.Set;
 
+import org.openhab.binding.sonypjtalk.handler.SonyPJTalkFleetHandler;
 import org.openhab.binding.sonypjtalk.handler.SonyPJTalkHandler;
+import org.eclipse.smarthome.core.thing.Bridge;
 import org.eclipse.smarthome.core.thing.Thing;
 import org.eclipse.smarthome.core.thing.ThingTypeUID;
 import org.eclipse.smarthome.core.thing.binding.BaseThingHandlerFactory;
@@ -30,7 +34,8 @@ import org.osgi.service.component.annotations.Component;
 @Component(service = ThingHandlerFactory.class, immediate = true)
 public class SonyPJTalkHandlerFactory extends BaseThingHandlerFactory {
 
-    private static final Set<ThingTypeUID> SUPPORTED_THING_TYPES_UIDS = Collections.singleton(THING_TYPE_PROJECTOR);
+    private static final Set<ThingTypeUID> SUPPORTED_THING_TYPES_UIDS = Collections
+            .unmodifiableSet(new HashSet<>(Arrays.asList(THING_TYPE_PROJECTOR, THING_TYPE_FLEET)));
 
     @Override
     public boolean supportsThingType(ThingTypeUID thingTypeUID) {
@@ -43,6 +48,8 @@ public class SonyPJTalkHandlerFactory extends BaseThingHandlerFactory {
 
         if (thingTypeUID.equals(THING_TYPE_PROJECTOR)) {
             return new SonyPJTalkHandler(thing);
+        } else if (thingTypeUID.equals(THING_TYPE_FLEET)) {
+            return new SonyPJTalkFleetHandler((Bridge) thing);
         }
 
         return null;
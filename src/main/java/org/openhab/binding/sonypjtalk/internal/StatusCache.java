@@ -0,0 +1,163 @@
+/**
+ * Copyright (c) 2010-2018 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.sonypjtalk.internal;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * This class keeps the last values read from a projector, so that they can
+ * be served without talking to the device while they are fresh.
+ *
+ * Fetches of stale items are coalesced: an item requested while a fetch
+ * is already scheduled or running for it doesn't trigger another one.
+ *
+ * Times are in milliseconds, as given by the caller.
+ *
+ * @author Fabien Philippe - Initial contribution
+ *
+ */
+public class StatusCache {
+    /**
+     * Time to live of the items until they are polled: the poller then sets them
+     * from the time of their next poll.
+     */
+    private static final Map<SDCPItem<?>, Long> TTLS = new HashMap<>();
+
+    /**
+     * Time to live of the items that are not in {@link #TTLS}.
+     */
+    private static final long DEFAULT_TTL = PollingPolicy.SETTINGS_INTERVAL + PollingPolicy.FRESHNESS_SLACK;
+
+    static {
+        TTLS.put(SDCPItem.POWER_STATUS, PollingPolicy.POWER_ON_INTERVAL + PollingPolicy.FRESHNESS_SLACK);
+        TTLS.put(SDCPItem.LAMP_TIMER, PollingPolicy.LAMP_ON_INTERVAL + PollingPolicy.FRESHNESS_SLACK);
+        TTLS.put(SDCPItem.MODEL_NAME, Long.MAX_VALUE);
+        TTLS.put(SDCPItem.IP, 3600000L);
+    }
+
+    private final Map<SDCPItem<?>, Long> _ttls = new HashMap<>(TTLS);
+
+    private final Map<SDCPItem<?>, Object> _values = new HashMap<>();
+
+    private final Map<SDCPItem<?>, Long> _updates = new HashMap<>();
+
+    /**
+     * Items waiting for the scheduled fetch.
+     */
+    private final Set<SDCPItem<?>> _pending = new HashSet<>();
+
+    /**
+     * Items being fetched.
+     */
+    private final Set<SDCPItem<?>> _fetching = new HashSet<>();
+
+    private boolean _fetchScheduled;
+
+    /**
+     * Stores the values read from the projector.
+     *
+     * @param status values read
+     * @param now current time
+     */
+    public synchronized void update(ProjectorStatus status, long now) {
+        for (SDCPItem<?> item : status.getItems()) {
+            _values.put(item, status.get(item));
+            _updates.put(item, now);
+        }
+    }
+
+    /**
+     * Changes the time to live of an item, for example when it is refreshed by
+     * other means than polls.
+     *
+     * @param item of the projector
+     * @param ttl new time to live
+     */
+    public synchronized void setTtl(SDCPItem<?> item, long ttl) {
+        _ttls.put(item, ttl);
+    }
+
+    /**
+     * Stores the value of an item learnt without reading it, for example from an
+     * advertisement of the projector.
+     *
+     * @param item of the projector
+     * @param value of the item
+     * @param now current time
+     */
+    public synchronized void update(SDCPItem<?> item, Object value, long now) {
+        _values.put(item, value);
+        _updates.put(item, now);
+    }
+
+    /**
+     * @param item of the projector
+     * @param now current time
+     * @return the value of the item, or null if it is unknown or stale
+     */
+    public synchronized Object get(SDCPItem<?> item, long now) {
+        Long update = _updates.get(item);
+        if (null == update) {
+            return null;
+        }
+
+        Long ttl = _ttls.get(item);
+        long age = now - update;
+        if (age >= (null == ttl ? DEFAULT_TTL : ttl)) {
+            return null;
+        }
+        return _values.get(item);
+    }
+
+    /**
+     * Requests a stale item to be fetched.
+     *
+     * @param item of the projector
+     * @return true if the caller has to schedule a fetch, false if the item will be
+     *         fetched by an already scheduled or running one
+     */
+    public synchronized boolean requestFetch(SDCPItem<?> item) {
+        if (_fetching.contains(item) || !_pending.add(item) || _fetchScheduled) {
+            return false;
+        }
+
+        _fetchScheduled = true;
+        return true;
+    }
+
+    /**
+     * Called by the scheduled fetch when it starts.
+     *
+     * @return the items to be fetched
+     */
+    public synchronized Set<SDCPItem<?>> startFetch() {
+        Set<SDCPItem<?>> items = new HashSet<>(_pending);
+        _fetching.addAll(items);
+        _pending.clear();
+        _fetchScheduled = false;
+        return items;
+    }
+
+    /**
+     * Called by the scheduled fetch when it ends.
+     *
+     * @param items fetched
+     * @param status values read, null if the projector could not be reached
+     * @param now current time
+     */
+    public synchronized void endFetch(Set<SDCPItem<?>> items, ProjectorStatus status, long now) {
+        if (null != status) {
+            update(status, now);
+        }
+        _fetching.removeAll(items);
+    }
+}